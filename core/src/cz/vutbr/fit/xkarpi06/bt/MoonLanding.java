@@ -5,8 +5,13 @@ import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.kotcrab.vis.ui.VisUI;
 import com.kotcrab.vis.ui.widget.file.FileChooser;
+import cz.vutbr.fit.xkarpi06.bt.input.load.Trajectory3DLoader;
+import cz.vutbr.fit.xkarpi06.bt.input.load.TrajectoryFollower;
+import cz.vutbr.fit.xkarpi06.bt.input.load.TrajectoryLruCache;
 import cz.vutbr.fit.xkarpi06.bt.model.Simulation;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
 import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectoryComparison;
 import cz.vutbr.fit.xkarpi06.bt.view.MainMenuScreen;
 
 /**
@@ -35,12 +40,30 @@ public class MoonLanding extends Game {
     public Trajectory3D trajectory;
     public Simulation sim;
 
+    /** Recently loaded trajectories, current one is usually among them */
+    public TrajectoryLruCache trajectoryCache = new TrajectoryLruCache(TrajectoryLruCache.DEFAULT_BUDGET);
+
     /** Directory with trajectory data */
     public String trajectoryDir;
 
     /** True if trajectoryDir is changed in main menu */
     public boolean trajectoryDirWasChanged = false;
 
+    /** Directory with nominal trajectory compared with the loaded one, null or empty for no comparison */
+    public String nominalDir;
+
+    /** Comparison of loaded trajectory with nominal one, null if not comparing */
+    public TrajectoryComparison comparison;
+
+    /** True if trajectory files should be followed for appended data */
+    public boolean followTrajectory = false;
+
+    /** How smooth vertices of loaded trajectory are created */
+    public Smoothing smoothing = Trajectory3DLoader.DEFAULT_SMOOTHING;
+
+    /** Follower of trajectory files, null if not following */
+    public TrajectoryFollower follower;
+
     /** err msg to display in main menu */
     public String errMsg;
 
@@ -62,17 +85,48 @@ public class MoonLanding extends Game {
 
     @Override
     public void dispose() {
+        if (follower != null) { follower.stop(); }
         assets.dispose();
-        if (trajectory != null) { trajectory.dispose(); }
+        if (trajectory != null && !trajectoryCache.contains(trajectory)) { trajectory.dispose(); }
+        setComparison(null);
+        trajectoryCache.clear();
         VisUI.dispose();
     }
 
     /**
-     * Sets game trajectory object and also sets game.sim's trajectory
+     * Sets game trajectory object and also sets game.sim's trajectory,
+     * previous trajectory is disposed unless it is kept in trajectoryCache
      * @param t new trajectory
      */
     public void setTrajectory(Trajectory3D t) {
+        if (trajectory != null && trajectory != t && !trajectoryCache.contains(trajectory)) {
+            trajectory.dispose();
+        }
         trajectory = t;
         sim.setTrajectory(trajectory);
+        pinTrajectories();
+    }
+
+    /**
+     * Sets comparison of trajectory with nominal one, previous nominal trajectory is disposed
+     * unless it is kept in trajectoryCache or used by new comparison
+     * @param c new comparison, null to stop comparing
+     */
+    public void setComparison(TrajectoryComparison c) {
+        if (comparison != null && comparison != c) {
+            Trajectory3D nominal = comparison.getNominal();
+            if (nominal != trajectory && (c == null || nominal != c.getNominal()) && !trajectoryCache.contains(nominal)) {
+                nominal.dispose();
+            }
+        }
+        comparison = c;
+        pinTrajectories();
+    }
+
+    /**
+     * Keeps trajectories in use from being evicted from trajectoryCache
+     */
+    private void pinTrajectories() {
+        trajectoryCache.setPinned(trajectory, (comparison != null) ? comparison.getNominal() : null);
     }
 }
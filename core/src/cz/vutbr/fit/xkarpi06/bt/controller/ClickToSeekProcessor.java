@@ -0,0 +1,48 @@
+package cz.vutbr.fit.xkarpi06.bt.controller;
+
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+import cz.vutbr.fit.xkarpi06.bt.view.VisualizationScreen;
+
+/**
+ * Processes clicks on trajectory
+ *
+ * Left mouse button released close to where it was pressed is a click, the ship is moved
+ * to the clicked point of trajectory. Events are not consumed, so dragging still rotates camera.
+ *
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ */
+public class ClickToSeekProcessor extends InputAdapter {
+
+    /** Largest movement of pointer between press and release of click in pixels */
+    private static final int CLICK_DISTANCE = 4;
+
+    private VisualizationScreen visualizationScreen;
+
+    private int downX;
+    private int downY;
+    private boolean pressed = false;
+
+    public ClickToSeekProcessor(VisualizationScreen visualizationScreen) {
+        this.visualizationScreen = visualizationScreen;
+    }
+
+    @Override
+    public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+        pressed = (button == Input.Buttons.LEFT && pointer == 0);
+        downX = screenX;
+        downY = screenY;
+        return false;
+    }
+
+    @Override
+    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+        if (pressed && button == Input.Buttons.LEFT && pointer == 0
+                && Math.abs(screenX - downX) <= CLICK_DISTANCE && Math.abs(screenY - downY) <= CLICK_DISTANCE) {
+            visualizationScreen.seekToTrajectoryAt(screenX, screenY);
+        }
+        pressed = false;
+        return false;
+    }
+}
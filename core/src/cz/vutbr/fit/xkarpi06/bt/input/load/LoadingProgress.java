@@ -0,0 +1,104 @@
+package cz.vutbr.fit.xkarpi06.bt.input.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of trajectory loading, updated by loading threads and read by render thread
+ *
+ * Every source file is registered with its size before loading starts, readers then
+ * add amounts of processed bytes and lines.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class LoadingProgress {
+
+    /** Index of total bytes in file record */
+    private static final int TOTAL = 0;
+
+    /** Index of processed bytes in file record */
+    private static final int BYTES = 1;
+
+    /** Index of processed lines in file record */
+    private static final int LINES = 2;
+
+    /** Records of registered files in registration order */
+    private final Map<String, long[]> files = new LinkedHashMap<>();
+
+    /**
+     * Registers file, which is going to be loaded
+     * @param fileName name of source file
+     * @param size size of the file in bytes
+     */
+    public synchronized void addFile(String fileName, long size) {
+        files.put(fileName, new long[]{ size, 0, 0 });
+    }
+
+    /**
+     * Adds processed part of file, unregistered files are ignored
+     * @param fileName name of source file
+     * @param bytes amount of newly processed bytes
+     * @param lines amount of newly processed lines
+     */
+    public synchronized void add(String fileName, long bytes, long lines) {
+        long[] record = files.get(fileName);
+        if (record != null) {
+            record[BYTES] += bytes;
+            record[LINES] += lines;
+        }
+    }
+
+    /**
+     * Marks all registered files as processed, e.g. when trajectory was read from cache
+     */
+    public synchronized void finish() {
+        for (long[] record : files.values()) {
+            record[BYTES] = record[TOTAL];
+        }
+    }
+
+    /**
+     * @return names of registered files in registration order
+     */
+    public synchronized List<String> getFileNames() {
+        return new ArrayList<>(files.keySet());
+    }
+
+    /**
+     * @param fileName name of source file
+     * @return processed part of file from 0 to 1
+     */
+    public synchronized float getFraction(String fileName) {
+        long[] record = files.get(fileName);
+        return (record == null) ? 0 : fraction(record[BYTES], record[TOTAL]);
+    }
+
+    /**
+     * @param fileName name of source file
+     * @return amount of processed lines of file
+     */
+    public synchronized long getLines(String fileName) {
+        long[] record = files.get(fileName);
+        return (record == null) ? 0 : record[LINES];
+    }
+
+    /**
+     * @return processed part of all registered files from 0 to 1
+     */
+    public synchronized float getFraction() {
+        long bytes = 0;
+        long total = 0;
+        for (long[] record : files.values()) {
+            bytes += record[BYTES];
+            total += record[TOTAL];
+        }
+        return fraction(bytes, total);
+    }
+
+    private static float fraction(long part, long total) {
+        return (total == 0) ? 1 : Math.min(1, (float) part / total);
+    }
+}
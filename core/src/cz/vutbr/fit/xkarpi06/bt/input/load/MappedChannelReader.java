@@ -0,0 +1,702 @@
+package cz.vutbr.fit.xkarpi06.bt.input.load;
+
+import cz.vutbr.fit.xkarpi06.bt.input.parse.StringParser;
+import cz.vutbr.fit.xkarpi06.bt.model.TaskPool;
+import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads one channel file into primitive float array using memory mapping
+ *
+ * Lines are parsed directly from mapped bytes by column strategy of {@link StringParser}
+ * chosen by file name, so no object is created per line. Apart from the result array,
+ * used memory does not depend on file length.
+ *
+ * Big files are split into chunks ending with new line, which are processed in parallel
+ * in two passes. First pass counts lines of every chunk, so that every chunk knows number
+ * of its first line and its place in result array. Second pass parses chunks straight into
+ * result array. Valid rows are then moved together in original order.
+ *
+ * Files with header (see {@link StringParser#hasHeader(String)}) are parsed by strategy
+ * created from their first line, which is not counted as data.
+ *
+ * Gzip compressed files ({@link ProjectFiles#GZIP_SUFFIX}) are decompressed as a stream
+ * into reusable buffer, whose complete lines are parsed in a single pass. Appended lines
+ * are read the same way into buffer reused by every call, so no mapping stays open
+ * between calls and the file can be written meanwhile.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class MappedChannelReader {
+
+    /** Logger instance */
+    public static final Logger LOGGER = MyLog.getLogger( MappedChannelReader.class.getName() );
+
+    /** Biggest part of file mapped at once, buffers are indexed by int */
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    /** Smallest chunk parsed by its own task, smaller files are parsed by calling thread */
+    private static final long MIN_CHUNK = 4 * 1024 * 1024;
+
+    /** Chunks per thread, more chunks balance uneven lines better */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** Bytes read at once when looking for new line */
+    private static final int PROBE_SIZE = 4096;
+
+    /** Amount of parsed bytes between two progress reports */
+    private static final int PROGRESS_STEP = 1024 * 1024;
+
+    /** Initial size of buffer for decompressed data, grows only for longer lines */
+    private static final int STREAM_BUFFER = 1024 * 1024;
+
+    /** Initial capacity of result array of compressed file in rows */
+    private static final int STREAM_INITIAL_ROWS = 1024;
+
+    /**
+     * Transforms parsed row in place, called for every valid row from parsing threads
+     */
+    public interface RowConverter {
+        /**
+         * @param values parsed values
+         * @param offset index of first value of row
+         */
+        void convert(float[] values, int offset);
+    }
+
+    /** Source directory, for logs */
+    private final String dir;
+
+    /** Name of source file, chooses parsing strategy */
+    private final String fileName;
+
+    /** True if first line of file is header */
+    private final boolean headerRequired;
+
+    /** First line of file, if file has header and it was read already */
+    private String header;
+
+    /** Amount of values on each line, known after header is read */
+    private int variableCount;
+
+    /** Transformation of valid rows, can be null */
+    private RowConverter rowConverter;
+
+    /** Receives amounts of parsed bytes and lines, can be null */
+    private LoadingProgress progress;
+
+    /** Line counter for logs */
+    private long lineCount;
+
+    /** Amount of bytes already read */
+    private long position;
+
+    /** Buffer for appended bytes reused by every call, grows only for longer lines */
+    private ByteBuffer appendBuffer;
+
+    /**
+     * Constructor
+     * @param dir source directory, for logs
+     * @param fileName name of source file, chooses parsing strategy
+     */
+    public MappedChannelReader(String dir, String fileName) {
+        this.dir = dir;
+        this.fileName = fileName;
+        this.headerRequired = StringParser.hasHeader(fileName);
+        this.variableCount = new StringParser(fileName).getVariableCount();
+    }
+
+    /**
+     * @return first line of file, null if file has no header or it was not read yet
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Sets transformation applied to every valid row while parsing
+     * @param rowConverter the transformation, must be thread safe, null for none
+     */
+    public void setRowConverter(RowConverter rowConverter) {
+        this.rowConverter = rowConverter;
+    }
+
+    /**
+     * Sets progress, which is updated while parsing
+     * @param progress the progress, null for none
+     */
+    public void setProgress(LoadingProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Reads all valid lines of file
+     * @param file input, can be null
+     * @return variableCount values for each valid line, empty array if file could not be read
+     */
+    public float[] read(File file) {
+        position = 0;
+        lineCount = 0;
+        header = null;
+        return readLines(file, false);
+    }
+
+    /**
+     * Reads complete lines appended to file since previous call, first call reads the whole file.
+     * Line which does not end with new line yet is left for next call.
+     * @param file input, can be null
+     * @return variableCount values for each new valid line, empty array if there are none
+     */
+    public float[] readAppended(File file) {
+        return readLines(file, true);
+    }
+
+    /**
+     * @return amount of bytes already read from file
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Reads lines from position to end of file
+     * @param file input, can be null
+     * @param completeLinesOnly true if last line without new line should not be read
+     * @return variableCount values for each valid line, empty array if file could not be read
+     */
+    private float[] readLines(File file, boolean completeLinesOnly) {
+        if (file == null) {
+            LOGGER.log(Level.FINE, "Cannot load file {0}", fileName);
+            return new float[0];
+        }
+        if (ProjectFiles.isCompressed(file)) {
+            return readCompressed(file);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < position) {
+                LOGGER.log(Level.FINE, "File {0} is shorter than its already read part", fileName);
+                return new float[0];
+            }
+            if (headerRequired && header == null && !readHeader(channel, size, completeLinesOnly)) {
+                return new float[0];
+            }
+            if (completeLinesOnly) {
+                long end = findLastLineEnd(channel, position, size);
+                float[] values = readBuffered(channel, position, end);
+                position = end;
+                return values;
+            }
+            long end = size;
+            List<Chunk> chunks = split(channel, position, end);
+
+            runAll(chunks, channel, null);
+            long lines = 0;
+            for (Chunk chunk : chunks) {
+                chunk.firstLine = lineCount + lines + 1;
+                chunk.offset = (int) (lines * variableCount);
+                lines += chunk.lines;
+            }
+            if (lines * variableCount > Integer.MAX_VALUE) {
+                throw new IOException("File too big: " + fileName);
+            }
+
+            float[] values = new float[(int) (lines * variableCount)];
+            runAll(chunks, channel, values);
+            int used = 0;
+            for (Chunk chunk : chunks) {
+                int length = chunk.rows * variableCount;
+                System.arraycopy(values, chunk.offset, values, used, length);
+                used += length;
+            }
+            lineCount += lines;
+            position = end;
+            return (used == values.length) ? values : Arrays.copyOf(values, used);
+        } catch (IOException e) {
+            e.printStackTrace();
+            LOGGER.log(Level.FINE, "Cannot load file {0}", fileName);
+            return new float[0];
+        }
+    }
+
+    /**
+     * Reads header from start of file and chooses strategy according to it
+     * @param channel opened file
+     * @param size file size
+     * @param completeLinesOnly true if header has to end with new line
+     * @return false if there is no header yet
+     */
+    private boolean readHeader(FileChannel channel, long size, boolean completeLinesOnly) throws IOException {
+        long end = findNextLineEnd(channel, 0, size);
+        if (end == 0 || end > MAX_WINDOW) {
+            return false;
+        }
+        byte[] bytes = new byte[(int) end];
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) {
+            // header starts at beginning of file
+        }
+        if (completeLinesOnly && bytes[bytes.length - 1] != '\n') {
+            return false;
+        }
+        setHeader(bytes, bytes.length);
+        position = end;
+        return true;
+    }
+
+    /**
+     * Sets header and strategy according to it
+     * @param bytes buffer starting with header
+     * @param end byte after header line, including line separator
+     */
+    private void setHeader(byte[] bytes, int end) {
+        while (end > 0 && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r')) {
+            end--;
+        }
+        header = new String(bytes, 0, end, Charset.defaultCharset());
+        variableCount = new StringParser(fileName, header).getVariableCount();
+        lineCount = 1;
+        LOGGER.log(Level.FINE, "Header of {0}: {1}", new Object[]{ fileName, header });
+    }
+
+    /**
+     * Reads all valid lines of gzip compressed file, which is read only once.
+     * Compressed files are not expected to grow, later calls read nothing.
+     * @param file input
+     * @return variableCount values for each valid line, empty array if file could not be read
+     */
+    private float[] readCompressed(File file) {
+        if (position > 0) {
+            return new float[0];
+        }
+        Chunk stream = new Chunk(0, file.length());
+        stream.streamed = true;
+        float[] values = new float[variableCount * STREAM_INITIAL_ROWS];
+        byte[] bytes = new byte[STREAM_BUFFER];
+        int filled = 0;
+        long reportedBytes = 0;
+        try (FileInputStream fileIn = new FileInputStream(file);
+             InputStream in = new GZIPInputStream(fileIn, STREAM_BUFFER)) {
+            boolean eof = false;
+            while (!eof) {
+                int read = 0;
+                while (filled < bytes.length && (read = in.read(bytes, filled, bytes.length - filled)) >= 0) {
+                    filled += read;
+                }
+                eof = read < 0;
+                if (headerRequired && header == null) {
+                    int headerEnd = firstLineEnd(bytes, filled);
+                    if (headerEnd == 0 && !eof) {
+                        bytes = Arrays.copyOf(bytes, 2 * bytes.length);     // header longer than buffer
+                        continue;
+                    } else if (headerEnd == 0) {
+                        headerEnd = filled;
+                    }
+                    setHeader(bytes, headerEnd);
+                    filled -= headerEnd;
+                    System.arraycopy(bytes, headerEnd, bytes, 0, filled);
+                }
+                stream.firstLine = lineCount + 1;
+                int end = eof ? filled : lastLineEnd(bytes, filled);
+                if (end == 0 && !eof) {
+                    bytes = Arrays.copyOf(bytes, 2 * bytes.length);     // line longer than buffer
+                    continue;
+                }
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                buf.limit(end);
+                values = ensureRows(values, stream.rows + countSeparators(bytes, end) + 1);
+                int lines = stream.scanLines(buf, values);
+                lineCount += lines;
+                if (progress != null) {
+                    long compressedBytes = fileIn.getChannel().position();
+                    progress.add(fileName, compressedBytes - reportedBytes, lines);
+                    reportedBytes = compressedBytes;
+                }
+                filled -= end;
+                System.arraycopy(bytes, end, bytes, 0, filled);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            LOGGER.log(Level.FINE, "Cannot load file {0}", fileName);
+            return new float[0];
+        }
+        position = file.length();
+        return Arrays.copyOf(values, stream.rows * variableCount);
+    }
+
+    /**
+     * Reads all valid lines of part of file in a single pass through {@link #appendBuffer}
+     * @param channel opened file
+     * @param start first byte
+     * @param end byte after the last line
+     * @return variableCount values for each valid line
+     */
+    private float[] readBuffered(FileChannel channel, long start, long end) throws IOException {
+        if (appendBuffer == null) {
+            appendBuffer = ByteBuffer.allocate(STREAM_BUFFER);
+        }
+        Chunk stream = new Chunk(start, end);
+        float[] values = new float[0];
+        int filled = 0;
+        long next = start;
+        while (next < end) {
+            appendBuffer.limit((int) Math.min(appendBuffer.capacity(), filled + end - next));
+            appendBuffer.position(filled);
+            int read = channel.read(appendBuffer, next);
+            if (read < 0) {
+                throw new IOException("File shrank while reading: " + fileName);
+            }
+            next += read;
+            filled += read;
+            byte[] bytes = appendBuffer.array();
+            int lineEnd = (next == end) ? filled : lastLineEnd(bytes, filled);
+            if (lineEnd == 0) {
+                if (filled == bytes.length) {
+                    appendBuffer = ByteBuffer.wrap(Arrays.copyOf(bytes, 2 * bytes.length));    // line longer than buffer
+                }
+                continue;
+            }
+            stream.firstLine = lineCount + 1;
+            appendBuffer.limit(lineEnd);
+            values = ensureRows(values, stream.rows + countSeparators(bytes, lineEnd) + 1);
+            lineCount += stream.scanLines(appendBuffer, values);
+            filled -= lineEnd;
+            System.arraycopy(bytes, lineEnd, bytes, 0, filled);
+        }
+        return Arrays.copyOf(values, stream.rows * variableCount);
+    }
+
+    /**
+     * @param bytes buffer
+     * @param length amount of valid bytes
+     * @return index after first '\n', 0 if there is none
+     */
+    private static int firstLineEnd(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds end of last line in buffer, a line ending with '\r' at the very end may continue with '\n'
+     * @param bytes buffer
+     * @param length amount of valid bytes
+     * @return index after last line separator, 0 if there is none
+     */
+    private static int lastLineEnd(byte[] bytes, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == '\n' || (bytes[i] == '\r' && i < length - 1)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param bytes buffer
+     * @param length amount of valid bytes
+     * @return amount of line separators, upper bound for amount of lines ending in buffer
+     */
+    private static int countSeparators(byte[] bytes, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Grows result array, so that it can hold given amount of rows
+     * @param values result array
+     * @param rows required amount of rows
+     * @return array with at least required capacity
+     */
+    private float[] ensureRows(float[] values, long rows) throws IOException {
+        long required = rows * variableCount;
+        if (required <= values.length) {
+            return values;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("File too big: " + fileName);
+        }
+        return Arrays.copyOf(values, (int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * values.length)));
+    }
+
+    /**
+     * Splits part of file to chunks, every chunk except the last one ends with new line
+     * @param channel opened file
+     * @param start first byte
+     * @param end byte after last byte
+     * @return chunks in file order, empty if start equals end
+     */
+    private List<Chunk> split(FileChannel channel, long start, long end) throws IOException {
+        long parallelism = (long) TaskPool.POOL.getParallelism() * CHUNKS_PER_THREAD;
+        long chunkSize = Math.min(MAX_WINDOW, Math.max(MIN_CHUNK, (end - start + parallelism - 1) / parallelism));
+        List<Chunk> chunks = new ArrayList<>();
+        while (start < end) {
+            long chunkEnd = (end - start <= chunkSize) ? end : findNextLineEnd(channel, start + chunkSize, end);
+            if (chunkEnd - start > MAX_WINDOW) {
+                // no new line in whole window, mapping would not fit anyway
+                chunkEnd = start + MAX_WINDOW;
+            }
+            chunks.add(new Chunk(start, chunkEnd));
+            start = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds first new line at or after given position
+     * @param channel opened file
+     * @param from position to look from
+     * @param end byte after searched part
+     * @return position after found new line, end if there is none
+     */
+    private static long findNextLineEnd(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        while (from < end) {
+            probe.clear();
+            probe.limit((int) Math.min(PROBE_SIZE, end - from));
+            int read = channel.read(probe, from);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            from += read;
+        }
+        return end;
+    }
+
+    /**
+     * Finds last new line in given part of file
+     * @param channel opened file
+     * @param from first byte of searched part
+     * @param end byte after searched part
+     * @return position after found new line, from if there is none
+     */
+    private static long findLastLineEnd(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        while (from < end) {
+            long probeStart = Math.max(from, end - PROBE_SIZE);
+            probe.clear();
+            probe.limit((int) (end - probeStart));
+            int read = channel.read(probe, probeStart);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = read - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return probeStart + i + 1;
+                }
+            }
+            end = probeStart;
+        }
+        return from;
+    }
+
+    /**
+     * Counts (values == null) or parses all chunks, in parallel if there are more of them
+     * @param chunks chunks of file
+     * @param channel opened file
+     * @param values result array for parsing, null for counting
+     */
+    private void runAll(List<Chunk> chunks, final FileChannel channel, final float[] values) throws IOException {
+        if (chunks.size() < 2) {
+            for (Chunk chunk : chunks) {
+                chunk.run(channel, values);
+            }
+            return;
+        }
+        final List<RecursiveAction> tasks = new ArrayList<>();
+        for (final Chunk chunk : chunks) {
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    try {
+                        chunk.run(channel, values);
+                    } catch (IOException e) {
+                        chunk.failure = e;
+                    }
+                }
+            });
+        }
+        TaskPool.POOL.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        for (Chunk chunk : chunks) {
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+        }
+    }
+
+    /**
+     * Part of file processed by one task
+     */
+    private class Chunk {
+
+        /** First byte of chunk in file */
+        final long start;
+
+        /** Byte after chunk in file */
+        final long end;
+
+        /** Amount of lines, including blank ones */
+        int lines;
+
+        /** Number of first line in file, for logs */
+        long firstLine;
+
+        /** Index of first value of chunk in result array */
+        int offset;
+
+        /** Amount of valid lines */
+        int rows;
+
+        /** Error of the task */
+        IOException failure;
+
+        /** True if chunk is decompressed stream, its progress is reported by compressed bytes */
+        boolean streamed;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Counts lines (values == null) or parses them
+         * @param channel opened file
+         * @param values result array, null for counting
+         */
+        void run(FileChannel channel, float[] values) throws IOException {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            if (values == null) {
+                countLines(buf);
+            } else {
+                scanLines(buf, values);
+            }
+        }
+
+        /**
+         * Counts lines the same way as scanLines splits them
+         * @param buf mapped chunk
+         */
+        private void countLines(MappedByteBuffer buf) {
+            int limit = buf.limit();
+            int count = 0;
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    count++;
+                    if (b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') {
+                        i++;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < limit) {
+                count++;
+            }
+            lines = count;
+        }
+
+        /**
+         * Splits chunk to lines, separators are the same as in {@link java.util.Scanner#nextLine()}
+         * @param buf chunk bytes
+         * @param values result array
+         * @return amount of lines, including blank ones
+         */
+        private int scanLines(ByteBuffer buf, float[] values) {
+            StringParser parser = new StringParser(fileName, header);
+            int limit = buf.limit();
+            int lineStart = 0;
+            int line = 0;
+            int reportedBytes = 0;
+            int reportedLines = 0;
+            for (int i = 0; i < limit; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    parseLine(parser, buf, lineStart, i, values, line++);
+                    if (b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') {
+                        i++;
+                    }
+                    lineStart = i + 1;
+                    if (progress != null && !streamed && lineStart - reportedBytes >= PROGRESS_STEP) {
+                        progress.add(fileName, lineStart - reportedBytes, line - reportedLines);
+                        reportedBytes = lineStart;
+                        reportedLines = line;
+                    }
+                }
+            }
+            if (lineStart < limit) {
+                parseLine(parser, buf, lineStart, limit, values, line++);
+            }
+            if (progress != null && !streamed) {
+                progress.add(fileName, limit - reportedBytes, line - reportedLines);
+            }
+            return line;
+        }
+
+        /**
+         * Parses one line into values, blank lines are skipped
+         * @param parser parser of this chunk
+         * @param buf chunk bytes
+         * @param start first byte of line
+         * @param end byte after line
+         * @param values result array
+         * @param line index of line in chunk
+         */
+        private void parseLine(StringParser parser, ByteBuffer buf, int start, int end, float[] values, int line) {
+            int first = start;
+            while (first < end && (buf.get(first) & 0xff) <= ' ') {
+                first++;
+            }
+            if (first == end) {
+                return;
+            }
+            int rowOffset = offset + rows * variableCount;
+            if (parser.executeColumnStrategy(buf, start, end, values, rowOffset)) {
+                if (rowConverter != null) {
+                    rowConverter.convert(values, rowOffset);
+                }
+                rows++;
+            } else {
+                long lineNumber = firstLine + line;
+                LOGGER.log(Level.FINE, "Invalid line in {0}/{1}, line {2}", new Object[]{dir, fileName, lineNumber});
+                System.err.printf("Invalid line in %s/%s, line %d\n", dir, fileName, lineNumber);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cz.vutbr.fit.xkarpi06.bt.input.load;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -21,6 +22,12 @@ public class ProjectFiles {
     /** File for saving logs */
     public static final String LOGS_FILE = "log.txt";
 
+    /** Directory for trajectory caches, used when trajectory directory is not writable */
+    public static final String CACHE_DIRECTORY = System.getProperty("user.home").concat("/").concat(".moonlanding");
+
+    /** Name of binary cache file created next to trajectory source files */
+    public static final String CACHE_FILE = "trajectory.btc";
+
     /** Name of source file for trajectory times */
     public static final String SRC_TIMES = "timeline.txt";
 
@@ -42,6 +49,12 @@ public class ProjectFiles {
     /** Name of source file for horizontal velocity history */
     public static final String SRC_VTH = "velocity_horizontal.txt";
 
+    /** Name of source file combining all of the above in columns named by header */
+    public static final String SRC_TELEMETRY = "telemetry.csv";
+
+    /** Suffix of gzip compressed variant of any source file, e.g. mass.txt.gz */
+    public static final String GZIP_SUFFIX = ".gz";
+
     /** Name of source file for 3D model of spacecraft */
     public static final String SHIP_SOURCE_FILE = "Beresheet_centered_mass_5K_v2.g3dj";
 
@@ -55,7 +68,49 @@ public class ProjectFiles {
             SRC_PITCH,
             SRC_MASS,
             SRC_VR,
-            SRC_VTH
+            SRC_VTH,
+            SRC_TELEMETRY
     ));
 
+    /**
+     * Finds source file name of file, which can be compressed variant of source file
+     * @param fileName name of file in trajectory directory
+     * @return source file name (without GZIP_SUFFIX), or null if file is not a source file
+     */
+    public static String getSourceName(String fileName) {
+        if (SRC_FILES.contains(fileName)) {
+            return fileName;
+        }
+        if (fileName.endsWith(GZIP_SUFFIX)) {
+            String sourceName = fileName.substring(0, fileName.length() - GZIP_SUFFIX.length());
+            if (SRC_FILES.contains(sourceName)) {
+                return sourceName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param file source file
+     * @return true if file is gzip compressed variant of source file
+     */
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Finds source file in directory, uncompressed variant is preferred
+     * @param directory trajectory directory
+     * @param sourceFile name of source file
+     * @return existing file or null
+     */
+    public static File findSourceFile(File directory, String sourceFile) {
+        File file = new File(directory, sourceFile);
+        if (file.isFile()) {
+            return file;
+        }
+        File compressed = new File(directory, sourceFile + GZIP_SUFFIX);
+        return compressed.isFile() ? compressed : null;
+    }
+
 }
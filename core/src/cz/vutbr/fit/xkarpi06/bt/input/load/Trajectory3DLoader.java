@@ -1,13 +1,18 @@
 package cz.vutbr.fit.xkarpi06.bt.input.load;
 
-import com.badlogic.gdx.math.Vector3;
 import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+import cz.vutbr.fit.xkarpi06.bt.model.HistoryChannels;
+import cz.vutbr.fit.xkarpi06.bt.model.LazyHistory;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
 import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
-import cz.vutbr.fit.xkarpi06.bt.input.parse.StringParser;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectorySamples;
+import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.TelemetryParser;
+import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.TrajectoryParser;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,61 +27,436 @@ public class Trajectory3DLoader {
     public static final Logger LOGGER = MyLog.getLogger( Trajectory3DLoader.class.getName() );
 
     /** Source directory of data */
-    private static String dir;
+    private final String dir;
+
+    /** Progress of this loading, can be null */
+    private final LoadingProgress progress;
+
+    /** Smoothing of this loading */
+    private final Smoothing smoothing;
+
+    /** Amount of new vertices between each two control vertices */
+    static final int SMOOTH_FACTOR = 6;
+
+    /** Smoothing with the same amount of new vertices between each two control vertices */
+    public static final Smoothing DEFAULT_SMOOTHING = Smoothing.fixed(SMOOTH_FACTOR);
+
+    /** Smoothing with new vertices only where trajectory bends */
+    public static final Smoothing ADAPTIVE_SMOOTHING = Smoothing.adaptive(Smoothing.DEFAULT_TOLERANCE, Smoothing.DEFAULT_MAX_POINTS, 0);
+
+    /** Source files of histories, loaded on their first access */
+    static final String[] HISTORY_FILES = {
+            ProjectFiles.SRC_PITCH,
+            ProjectFiles.SRC_MASS,
+            ProjectFiles.SRC_VR,
+            ProjectFiles.SRC_VTH
+    };
+
+    /** Channels of histories of HISTORY_FILES */
+    static final String[] HISTORY_CHANNELS = {
+            Trajectory3D.CHANNEL_PITCH,
+            Trajectory3D.CHANNEL_MASS,
+            Trajectory3D.CHANNEL_VR,
+            Trajectory3D.CHANNEL_VTH
+    };
+
+    /** Amount of files loaded at the same time, vertices and times */
+    private static final int LOADING_THREADS = Math.min(Runtime.getRuntime().availableProcessors(), 2);
+
+    /** Creates daemon threads, so unfinished loading does not keep application running */
+    private static final ThreadFactory LOADING_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "trajectory-loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /** Converts rows of polar source file while they are parsed */
+    private static final MappedChannelReader.RowConverter POLAR_TO_CARTESIAN = new MappedChannelReader.RowConverter() {
+        @Override
+        public void convert(float[] values, int offset) {
+            toCartesian(values, offset);
+        }
+    };
 
     /**
      * Loads trajectory from given directory
      * @return Trajectory3D if successful, null otherwise
      */
     public static Trajectory3D load(String directory) {
-        Trajectory3DLoader.dir = directory;
-        LOGGER.log(Level.FINE,"Trying to load data from {0}", directory);
+        return load(directory, null);
+    }
+
+    /**
+     * Loads trajectory from given directory and reports its progress
+     * @param directory trajectory directory
+     * @param progress receives loaded files and processed bytes, can be null
+     * @return Trajectory3D if successful, null otherwise
+     */
+    public static Trajectory3D load(String directory, LoadingProgress progress) {
+        return load(directory, progress, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Loads trajectory from given directory and reports its progress
+     * @param directory trajectory directory
+     * @param progress receives loaded files and processed bytes, can be null
+     * @param smoothing how smooth vertices are created
+     * @return Trajectory3D if successful, null otherwise
+     */
+    public static Trajectory3D load(String directory, LoadingProgress progress, Smoothing smoothing) {
+        return new Trajectory3DLoader(directory, progress, smoothing).loadTrajectory();
+    }
+
+    /**
+     * Constructor, each loading has its own loader, so loadings in different threads do not share state
+     * @param directory trajectory directory
+     * @param progress receives loaded files and processed bytes, can be null
+     * @param smoothing how smooth vertices are created
+     */
+    private Trajectory3DLoader(String directory, LoadingProgress progress, Smoothing smoothing) {
+        this.dir = directory;
+        this.progress = progress;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Loads trajectory from directory of this loader
+     * @return Trajectory3D if successful, null otherwise
+     */
+    private Trajectory3D loadTrajectory() {
+        LOGGER.log(Level.FINE,"Trying to load data from {0}", dir);
         Trajectory3D loadedTrajectory = null;
         File dataDirectory = new File(dir);
         if (!dataDirectory.isDirectory()) {
             LOGGER.log(Level.SEVERE, "Directory does not exist: {0}", dir);
         } else {
-            loadedTrajectory = getTrajectory(dataDirectory);
+            Map<String, File> sourceFiles = listSourceFiles(dataDirectory);
+            if (progress != null) {
+                registerSourceFiles(sourceFiles, progress, false);
+            }
+            TrajectoryCache cache = new TrajectoryCache(dataDirectory, sourceFiles, smoothing);
+            loadedTrajectory = cache.read();
+            if (loadedTrajectory != null) {
+                if (progress != null) {
+                    progress.finish();
+                }
+                if (addMissingHistories(loadedTrajectory, sourceFiles)) {
+                    writeCacheWhenLoaded(cache, loadedTrajectory, true);
+                }
+            } else {
+                loadedTrajectory = sourceFiles.containsKey(ProjectFiles.SRC_TELEMETRY)
+                        ? getTelemetryTrajectory(sourceFiles)
+                        : getTrajectory(sourceFiles);
+                if (loadedTrajectory != null) {
+                    writeCacheWhenLoaded(cache, loadedTrajectory, false);
+                }
+            }
         }
         return loadedTrajectory;
     }
 
     /**
-     * Creates a trajectory from files in directory
+     * Writes trajectory to cache in background thread, so it does not delay the first frame.
+     * Histories, which are not loaded yet, are left out.
+     * @param cache the cache
+     * @param trajectory trajectory created from source files
+     */
+    private static void writeCacheInBackground(final TrajectoryCache cache, final Trajectory3D trajectory) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.write(trajectory);
+            }
+        }, "trajectory-cache");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Writes trajectory to cache once, when all its histories, which are not loaded yet, are loaded,
+     * so they are cached too and whole cache is written only once. Trajectory with all histories
+     * loaded is written at once.
+     * @param cache the cache
+     * @param trajectory trajectory created from source files or restored from cache
+     * @param cached true if trajectory was restored from cache, then it is written only if some
+     *               of the loaded histories has values
+     */
+    private static void writeCacheWhenLoaded(final TrajectoryCache cache, final Trajectory3D trajectory, final boolean cached) {
+        HistoryChannels channels = trajectory.getChannels();
+        final List<LazyHistory> waiting = new ArrayList<>();
+        for (int channel = 0; channel < channels.size(); channel++) {
+            if (!channels.get(channel).isLoaded()) {
+                waiting.add(channels.get(channel));
+            }
+        }
+        if (waiting.isEmpty()) {
+            if (!cached) {
+                writeCacheInBackground(cache, trajectory);
+            }
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(waiting.size());
+        for (LazyHistory history : waiting) {
+            history.whenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    if (remaining.decrementAndGet() > 0) {
+                        return;
+                    }
+                    boolean loadedValues = false;
+                    for (LazyHistory loaded : waiting) {
+                        loadedValues |= loaded.get() != null;
+                    }
+                    if (!cached || loadedValues) {
+                        writeCacheInBackground(cache, trajectory);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds histories missing in trajectory restored from cache, each is loaded from its source file on its first access
+     * @param trajectory trajectory restored from cache
+     * @param sourceFiles the trajectory files
+     * @return true if some history was added
+     */
+    private boolean addMissingHistories(Trajectory3D trajectory, Map<String, File> sourceFiles) {
+        boolean added = false;
+        for (int i = 0; i < HISTORY_FILES.length; i++) {
+            String historyFile = HISTORY_FILES[i];
+            if (sourceFiles.containsKey(historyFile) && trajectory.getChannels().indexOf(HISTORY_CHANNELS[i]) < 0) {
+                addHistory(trajectory, historyFile, new LazyHistory(lazyFloatsSource(dir, sourceFiles.get(historyFile), historyFile)));
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Finds source files in directory, including their gzip compressed variants
      * @param sourceDirectory input directory with the trajectory files
-     * @return Trajectory3D, or null
+     * @return source files by source file name
      */
-    private static Trajectory3D getTrajectory(File sourceDirectory) {
-//        City newCity = City.defaultInstance(cityName);
+    static Map<String, File> listSourceFiles(File sourceDirectory) {
         Map<String, File> sourceFiles = new HashMap<>();
         for (File directoryItem : sourceDirectory.listFiles()) {
-            if (ProjectFiles.SRC_FILES.contains(directoryItem.getName())) {
-                sourceFiles.put(directoryItem.getName(), directoryItem);
+            String sourceName = ProjectFiles.getSourceName(directoryItem.getName());
+            // uncompressed variant is preferred when both are present
+            if (sourceName != null && (sourceName.equals(directoryItem.getName()) || !sourceFiles.containsKey(sourceName))) {
+                sourceFiles.put(sourceName, directoryItem);
             }
             LOGGER.log(Level.FINE, "Data directory contents: {0}", directoryItem.getName());
         }
+        return sourceFiles;
+    }
+
+    /**
+     * Registers source files, which are going to be loaded, in progress
+     * @param sourceFiles the trajectory files
+     * @param progress the progress
+     * @param histories true if histories are loaded with vertices and times
+     */
+    static void registerSourceFiles(Map<String, File> sourceFiles, LoadingProgress progress, boolean histories) {
+        if (sourceFiles.containsKey(ProjectFiles.SRC_TELEMETRY)) {
+            progress.addFile(ProjectFiles.SRC_TELEMETRY, sourceFiles.get(ProjectFiles.SRC_TELEMETRY).length());
+            return;
+        }
+        List<String> loaded = new ArrayList<>();
+        loaded.add(sourceFiles.containsKey(ProjectFiles.SRC_TRAJECTORY_POLAR)
+                ? ProjectFiles.SRC_TRAJECTORY_POLAR : ProjectFiles.SRC_TRAJECTORY_CARTESIAN);
+        loaded.add(ProjectFiles.SRC_TIMES);
+        if (histories) {
+            loaded.addAll(Arrays.asList(HISTORY_FILES));
+        }
+        for (String sourceFile : loaded) {
+            if (sourceFiles.containsKey(sourceFile)) {
+                progress.addFile(sourceFile, sourceFiles.get(sourceFile).length());
+            }
+        }
+    }
 
-        Vector3[] controlVertices = loadVertices(sourceFiles);
-        float[] times = loadTimes(sourceFiles);
-        int smoothFactor = 6;
-        Trajectory3D trajectory = Trajectory3D.create(controlVertices, times, smoothFactor);
+    /**
+     * Creates a trajectory from source files
+     *
+     * Vertices and times are loaded by their own tasks, trajectory is created as soon as
+     * they are ready. Histories are attached unloaded, each is loaded on its first access.
+     * @param sourceFiles the trajectory files
+     * @return Trajectory3D, or null
+     */
+    private Trajectory3D getTrajectory(final Map<String, File> sourceFiles) {
+        ExecutorService executor = Executors.newFixedThreadPool(LOADING_THREADS, LOADING_THREAD_FACTORY);
+        try {
+            Future<float[]> controlVertices = executor.submit(new Callable<float[]>() {
+                @Override
+                public float[] call() {
+                    return loadVertices(sourceFiles);
+                }
+            });
+            Future<float[]> times = executor.submit(new Callable<float[]>() {
+                @Override
+                public float[] call() {
+                    return loadTimes(sourceFiles);
+                }
+            });
+            Trajectory3D trajectory = Trajectory3D.create(controlVertices.get(), times.get(), smoothing);
 
-        if (trajectory != null) {
-            trajectory.addPitchHistory(loadPitchHistory(sourceFiles));
-            trajectory.addMassHistory(loadMassHistory(sourceFiles));
-            trajectory.addVrHistory(loadVrHistory(sourceFiles));
-            trajectory.addVthHistory(loadVthHistory(sourceFiles));
+            if (trajectory != null) {
+                for (String historyFile : HISTORY_FILES) {
+                    if (sourceFiles.containsKey(historyFile)) {
+                        addHistory(trajectory, historyFile, new LazyHistory(lazyFloatsSource(dir, sourceFiles.get(historyFile), historyFile)));
+                    }
+                }
+            }
+            return trajectory;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.SEVERE, "Loading interrupted: {0}", dir);
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            LOGGER.log(Level.SEVERE, "Loading failed: {0}", dir);
+            return null;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
+    /**
+     * Creates a trajectory from combined telemetry file, which is read in one pass
+     * @param sourceFiles the trajectory files, containing telemetry file
+     * @return Trajectory3D, or null
+     */
+    private Trajectory3D getTelemetryTrajectory(Map<String, File> sourceFiles) {
+        LOGGER.log(Level.FINE, "Loading telemetry from {0}/{1}", new Object[]{ dir, ProjectFiles.SRC_TELEMETRY });
+        MappedChannelReader reader = new MappedChannelReader(dir, ProjectFiles.SRC_TELEMETRY);
+        reader.setProgress(progress);
+        float[] rows = reader.read(sourceFiles.get(ProjectFiles.SRC_TELEMETRY));
+        TrajectorySamples samples = toSamples(rows, reader.getHeader());
+        if (samples == null) {
+            return null;
+        }
+        Trajectory3D trajectory = Trajectory3D.create(samples.vertices, samples.times, smoothing);
+        if (trajectory == null) {
+            System.err.printf("Trajectory NOT CREATED. Not enough lines in %s: less than 2.\n", ProjectFiles.SRC_TELEMETRY);
+            return null;
+        }
+        trajectory.addPitchHistory(samples.pitch);
+        trajectory.addMassHistory(samples.mass);
+        trajectory.addVrHistory(samples.vr);
+        trajectory.addVthHistory(samples.vth);
+        for (Map.Entry<String, float[]> channel : samples.channels.entrySet()) {
+            trajectory.addHistory(channel.getKey(), channel.getValue());
+        }
         return trajectory;
     }
 
+    /**
+     * Splits parsed lines of telemetry file to channels in one pass, converts polar vertices to cartesian form
+     * @param rows parsed lines, value of every column for each line
+     * @param header header of telemetry file
+     * @return samples, histories without column are empty, other named columns are channels,
+     *         null if header does not name time and position columns
+     */
+    static TrajectorySamples toSamples(float[] rows, String header) {
+        if (header == null) {
+            System.err.printf("Missing header in %s.\n", ProjectFiles.SRC_TELEMETRY);
+            return null;
+        }
+        TelemetryParser columns = new TelemetryParser(header);
+        boolean polar = columns.isPolar();
+        int time = columns.getColumnIndex(TelemetryParser.COLUMN_TIME);
+        if (time < 0 || !(polar || columns.isCartesian())) {
+            System.err.printf("Missing columns in %s. Provide %s and %s,%s,%s or %s,%s,%s.\n", ProjectFiles.SRC_TELEMETRY,
+                    TelemetryParser.COLUMN_TIME, TelemetryParser.COLUMN_R, TelemetryParser.COLUMN_THETA, TelemetryParser.COLUMN_PHI,
+                    TelemetryParser.COLUMN_X, TelemetryParser.COLUMN_Y, TelemetryParser.COLUMN_Z);
+            return null;
+        }
+        int[] position = polar
+                ? new int[]{ columns.getColumnIndex(TelemetryParser.COLUMN_R), columns.getColumnIndex(TelemetryParser.COLUMN_THETA), columns.getColumnIndex(TelemetryParser.COLUMN_PHI) }
+                : new int[]{ columns.getColumnIndex(TelemetryParser.COLUMN_X), columns.getColumnIndex(TelemetryParser.COLUMN_Y), columns.getColumnIndex(TelemetryParser.COLUMN_Z) };
+        int columnCount = columns.getVariableCount();
+        List<String> otherNames = new ArrayList<>();
+        List<Integer> otherColumns = new ArrayList<>();
+        for (int c = 0; c < columnCount; c++) {
+            String name = columns.getColumnName(c);
+            if (!name.isEmpty() && !TelemetryParser.isKnownColumn(name) && !otherNames.contains(name)) {
+                otherNames.add(name);
+                otherColumns.add(c);
+            }
+        }
+        int[] histories = new int[5 + otherColumns.size()];
+        histories[0] = time;
+        histories[1] = columns.getColumnIndex(TelemetryParser.COLUMN_PITCH);
+        histories[2] = columns.getColumnIndex(TelemetryParser.COLUMN_MASS);
+        histories[3] = columns.getColumnIndex(TelemetryParser.COLUMN_VR);
+        histories[4] = columns.getColumnIndex(TelemetryParser.COLUMN_VTH);
+        for (int c = 0; c < otherColumns.size(); c++) {
+            histories[5 + c] = otherColumns.get(c);
+        }
+
+        int rowCount = rows.length / columnCount;
+        float[] coordinates = new float[rowCount * TrajectoryParser.VARIABLE_COUNT];
+        float[][] channels = new float[histories.length][];
+        for (int c = 0; c < histories.length; c++) {
+            channels[c] = new float[(histories[c] < 0) ? 0 : rowCount];
+        }
+        for (int i = 0; i < rowCount; i++) {
+            int row = i * columnCount;
+            int vertex = i * TrajectoryParser.VARIABLE_COUNT;
+            for (int j = 0; j < TrajectoryParser.VARIABLE_COUNT; j++) {
+                coordinates[vertex + j] = rows[row + position[j]];
+            }
+            if (polar) {
+                toCartesian(coordinates, vertex);
+            }
+            for (int c = 0; c < histories.length; c++) {
+                if (histories[c] >= 0) {
+                    channels[c][i] = rows[row + histories[c]];
+                }
+            }
+        }
+        Map<String, float[]> others = new LinkedHashMap<>();
+        for (int c = 0; c < otherNames.size(); c++) {
+            others.put(otherNames.get(c), channels[5 + c]);
+        }
+        return new TrajectorySamples(coordinates, channels[0], channels[1], channels[2], channels[3], channels[4], others);
+    }
+
+    /**
+     * Adds history to trajectory based on its source file
+     * @param trajectory the trajectory
+     * @param sourceFile name of source file of the history
+     * @param history loaded history
+     */
+    private static void addHistory(Trajectory3D trajectory, String sourceFile, LazyHistory history) {
+        switch (sourceFile) {
+            case ProjectFiles.SRC_PITCH:
+                trajectory.addPitchHistory(history);
+                break;
+            case ProjectFiles.SRC_MASS:
+                trajectory.addMassHistory(history);
+                break;
+            case ProjectFiles.SRC_VR:
+                trajectory.addVrHistory(history);
+                break;
+            case ProjectFiles.SRC_VTH:
+                trajectory.addVthHistory(history);
+                break;
+            default:
+                break;
+        }
+    }
+
     /**
      * Creates array of vertices from source file, if present
      * @param sourceFiles source files
-     * @return array of vertices or null if sourceFile is missing
+     * @return packed x,y,z triplets in cartesian form or null if sourceFile is missing
      */
-    private static Vector3[] loadVertices(Map<String, File> sourceFiles) {
+    private float[] loadVertices(Map<String, File> sourceFiles) {
         String sourceFile;
         if (sourceFiles.containsKey(ProjectFiles.SRC_TRAJECTORY_POLAR)) {
             sourceFile = ProjectFiles.SRC_TRAJECTORY_POLAR;
@@ -90,44 +470,37 @@ public class Trajectory3DLoader {
             System.err.printf("Missing source files. Provide one of: %s or %s.\n", ProjectFiles.SRC_TRAJECTORY_POLAR, ProjectFiles.SRC_TRAJECTORY_CARTESIAN);
             return null;
         }
-        Scanner sc = getScannerInstance(sourceFiles.get(sourceFile));
-        List<Vector3> vertices = new ArrayList<>();
-        Vector3 parsedPolarVector;
-        if (sc != null) {
-            int lineCount = 1;
-            while (sc.hasNextLine()) {
-                parsedPolarVector = (Vector3) parseNextLine(sc, sourceFile, lineCount);
-                if (parsedPolarVector != null) {
-                    if (sourceFile.equals(ProjectFiles.SRC_TRAJECTORY_CARTESIAN)) {
-                        vertices.add(parsedPolarVector);
-                    } else {
-                        vertices.add(toCartesian(parsedPolarVector));
-                    }
-                }
-                lineCount++;
-            }
-        } else {
-            LOGGER.log(Level.FINE, "Cannot load file {0}", sourceFile);
+        MappedChannelReader reader = createVertexReader(dir, sourceFile);
+        reader.setProgress(progress);
+        return reader.read(sourceFiles.get(sourceFile));
+    }
+
+    /**
+     * Creates reader of vertex source file, which converts polar vertices to cartesian form while parsing
+     * @param directory source directory
+     * @param sourceFile name of source file, determines polar or cartesian form
+     * @return the reader
+     */
+    static MappedChannelReader createVertexReader(String directory, String sourceFile) {
+        MappedChannelReader reader = new MappedChannelReader(directory, sourceFile);
+        if (sourceFile.equals(ProjectFiles.SRC_TRAJECTORY_POLAR)) {
+            reader.setRowConverter(POLAR_TO_CARTESIAN);
         }
-        Vector3[] result = new Vector3[vertices.size()];
-        vertices.toArray(result);
-        return result;
+        return reader;
     }
 
     /**
-     * Creates vector in cartesian form from polar form vector
-     * @param polar input vector
-     * @return cartesian vector
+     * Converts vector in polar form to cartesian form in place
+     * @param coordinates packed r,theta,phi triplets
+     * @param offset index of r of converted vector
      */
-    private static Vector3 toCartesian(Vector3 polar) {
-        float r = polar.x;
-        float th = polar.y;
-        float phi = polar.z;
-        Vector3 cartesian = new Vector3();
-        cartesian.x = (float) (r * Math.cos(th) * Math.cos(phi));
-        cartesian.y = (float) (r * Math.sin(th) * Math.cos(phi));
-        cartesian.z = (float) (r * Math.sin(phi));
-        return cartesian;
+    private static void toCartesian(float[] coordinates, int offset) {
+        float r = coordinates[offset];
+        float th = coordinates[offset + 1];
+        float phi = coordinates[offset + 2];
+        coordinates[offset] = (float) (r * Math.cos(th) * Math.cos(phi));
+        coordinates[offset + 1] = (float) (r * Math.sin(th) * Math.cos(phi));
+        coordinates[offset + 2] = (float) (r * Math.sin(phi));
     }
 
     /**
@@ -135,7 +508,7 @@ public class Trajectory3DLoader {
      * @param sourceFiles provided source files
      * @return time history
      */
-    private static float[] loadTimes(Map<String, File> sourceFiles) {
+    private float[] loadTimes(Map<String, File> sourceFiles) {
         float[] times = loadFloats(sourceFiles, ProjectFiles.SRC_TIMES);
         if (times.length == 0) {
             System.err.printf("Source file missing. Provide file: %s\n", ProjectFiles.SRC_TIMES);
@@ -146,116 +519,32 @@ public class Trajectory3DLoader {
     }
 
     /**
-     * Creates pitch history from source file, if present
-     * @param sourceFiles provided source files
-     * @return pitch history
-     */
-    private static float[] loadPitchHistory(Map<String, File> sourceFiles) {
-        return loadFloats(sourceFiles, ProjectFiles.SRC_PITCH);
-    }
-
-    /**
-     * Creates mass history from source file, if present
-     * @param sourceFiles provided source files
-     * @return mass history
-     */
-    private static float[] loadMassHistory(Map<String, File> sourceFiles) {
-        return loadFloats(sourceFiles, ProjectFiles.SRC_MASS);
-    }
-
-    /**
-     * Creates vertical velocity history from source file, if present
-     * @param sourceFiles provided source files
-     * @return vertical velocity history
-     */
-    private static float[] loadVrHistory(Map<String, File> sourceFiles) {
-        return loadFloats(sourceFiles, ProjectFiles.SRC_VR);
-    }
-
-    /**
-     * Creates horizontal velocity history from source file, if present
-     * @param sourceFiles provided source files
-     * @return horizontal velocity history
+     * Creates source of history loaded on its first access, without progress
+     * @param directory source directory
+     * @param file source file of the history
+     * @param sourceFile filename of the history
+     * @return source returning the history
      */
-    private static float[] loadVthHistory(Map<String, File> sourceFiles) {
-        return loadFloats(sourceFiles, ProjectFiles.SRC_VTH);
+    private static LazyHistory.Source lazyFloatsSource(final String directory, final File file, final String sourceFile) {
+        return new LazyHistory.Source() {
+            @Override
+            public float[] load() {
+                LOGGER.log(Level.FINE, "Loading history from {0}/{1}", new Object[]{ directory, sourceFile });
+                return new MappedChannelReader(directory, sourceFile).read(file);
+            }
+        };
     }
 
     /**
      * Loads list of floats from given file, if the file is among sourcefiles
      * @param sourceFiles given files
      * @param sourceFile filename of the file we will load from
-     * @return list of floats
-     */
-    private static float[] loadFloats(Map<String, File> sourceFiles, String sourceFile) {
-        Scanner sc = getScannerInstance(sourceFiles.get(sourceFile));
-        List<Float> floats = new ArrayList<>();
-        Float parsedPitch;
-        if (sc != null) {
-            int lineCount = 1;
-            while (sc.hasNextLine()) {
-                parsedPitch = (Float) parseNextLine(sc, sourceFile, lineCount);
-                if (parsedPitch != null) {
-                    floats.add(parsedPitch);
-                }
-                lineCount++;
-            }
-        } else {
-            LOGGER.log(Level.FINE, "Cannot load file {0}", sourceFile);
-        }
-        float[] result = new float[floats.size()];
-        for (int i = 0; i < floats.size(); i++) {
-            result[i] = floats.get(i);
-        }
-        return result;
-    }
-
-    /**
-     * Creates scanner instance if possible
-     * @param file input
-     * @return Scanner or null
-     */
-    private static Scanner getScannerInstance(File file) {
-        Scanner sc = null;
-        if (file != null) {
-            try {
-                sc = new Scanner(file);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
-        }
-        return sc;
-    }
-
-    /**
-     * Reads next line from scanner and returns result as object
-     *
-     * Object type is based on fileName, each fileName has different
-     * strategy for parsing line into variables. This strategy is chosen
-     * in creator of StringParser
-     * @param sc scanner, assumed existing and hasNextLine
-     * @param fileName name of source file for logs and strategy
-     * @param lineCount counter for logs
-     * @return null if line is invalid, instance if everything is correct.
+     * @return array of floats, empty if file is missing
      */
-    private static Object parseNextLine(Scanner sc, String fileName, int lineCount) {
-        Object result = null;
-        StringParser sp = new StringParser(fileName);
-        try {
-            String line = sc.nextLine();
-            if (!line.trim().isEmpty()) {
-                result = sp.exectueStrategy(line);
-                if (result == null) {
-                    LOGGER.log(Level.FINE, "Invalid line in {0}/{1}, line {2}", new Object[]{dir, fileName, lineCount});
-                    System.err.printf("Invalid line in %s/%s, line %d\n", dir, fileName, lineCount);
-                }
-            }
-        } catch (NoSuchElementException|IllegalStateException e) {
-            e.printStackTrace();
-        }
-        return result;
+    private float[] loadFloats(Map<String, File> sourceFiles, String sourceFile) {
+        MappedChannelReader reader = new MappedChannelReader(dir, sourceFile);
+        reader.setProgress(progress);
+        return reader.read(sourceFiles.get(sourceFile));
     }
 
 }
@@ -0,0 +1,388 @@
+package cz.vutbr.fit.xkarpi06.bt.input.load;
+
+import cz.vutbr.fit.xkarpi06.bt.model.HistoryChannels;
+import cz.vutbr.fit.xkarpi06.bt.model.LazyHistory;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Binary columnar cache of loaded trajectory, so text source files are parsed only once
+ *
+ * Cache file starts with a small header describing the smoothing and the source files it was created from
+ * (name, size, last modification and CRC32 of content) and the float blocks it contains.
+ * Blocks follow the header as little-endian floats, vertices are stored as x,y,z triplets.
+ * Cache is valid if all source files have the same size and either the same modification
+ * time or the same content.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectoryCache {
+
+    /** Logger instance */
+    public static final Logger LOGGER = MyLog.getLogger( TrajectoryCache.class.getName() );
+
+    /** First bytes of cache file, "BTC1" */
+    private static final int MAGIC = 0x31435442;
+
+    /** Format version, increase with every change of layout */
+    private static final int VERSION = 3;
+
+    /** Size of buffer for writing blocks */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /** Biggest part of file mapped at once when computing checksum */
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    /** Block names */
+    public static final String BLOCK_CONTROL_VERTICES = "control_vertices";
+    public static final String BLOCK_SMOOTH_VERTICES = "smooth_vertices";
+    public static final String BLOCK_SECTION_POINTS = "section_points";
+    public static final String BLOCK_TIMES = "times";
+    public static final String BLOCK_PITCH = "pitch";
+    public static final String BLOCK_MASS = "mass";
+    public static final String BLOCK_VR = "velocity_vertical";
+    public static final String BLOCK_VTH = "velocity_horizontal";
+
+    /** Prefix of blocks with other histories, followed by channel name */
+    public static final String BLOCK_CHANNEL_PREFIX = "channel:";
+
+    /** Trajectory directory */
+    private final File directory;
+
+    /** Source files ordered by name */
+    private final Map<String, File> sourceFiles;
+
+    /** Smoothing the trajectory is created with, smooth vertices depend on it */
+    private final Smoothing smoothing;
+
+    /** Source file sizes at the time cache was opened */
+    private final Map<String, Long> sizes = new TreeMap<>();
+
+    /** Source file modification times at the time cache was opened */
+    private final Map<String, Long> modified = new TreeMap<>();
+
+    /**
+     * Constructor, remembers size and modification time of each source file
+     * @param directory trajectory directory
+     * @param sourceFiles source files found in directory
+     * @param smoothing smoothing of created trajectory
+     */
+    public TrajectoryCache(File directory, Map<String, File> sourceFiles, Smoothing smoothing) {
+        this.directory = directory;
+        this.sourceFiles = new TreeMap<>(sourceFiles);
+        this.smoothing = smoothing;
+        for (Map.Entry<String, File> source : this.sourceFiles.entrySet()) {
+            sizes.put(source.getKey(), source.getValue().length());
+            modified.put(source.getKey(), source.getValue().lastModified());
+        }
+    }
+
+    /**
+     * Loads trajectory from cache file, if it exists and is up to date
+     * @return Trajectory3D or null
+     */
+    public Trajectory3D read() {
+        File cacheFile = getSidecarFile();
+        if (!cacheFile.isFile()) {
+            cacheFile = getUserCacheFile();
+            if (cacheFile == null || !cacheFile.isFile()) {
+                return null;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || !readName(buf).equals(smoothing.getKey()) || !readSources(buf)) {
+                LOGGER.log(Level.FINE, "Cache {0} is out of date", cacheFile);
+                return null;
+            }
+            Map<String, float[]> blocks = readBlocks(buf);
+            Trajectory3D trajectory = Trajectory3D.restore(blocks.get(BLOCK_CONTROL_VERTICES),
+                    blocks.get(BLOCK_SMOOTH_VERTICES), blocks.get(BLOCK_SECTION_POINTS), blocks.get(BLOCK_TIMES), smoothing);
+            if (trajectory != null) {
+                if (blocks.containsKey(BLOCK_PITCH)) trajectory.addPitchHistory(blocks.get(BLOCK_PITCH));
+                if (blocks.containsKey(BLOCK_MASS)) trajectory.addMassHistory(blocks.get(BLOCK_MASS));
+                if (blocks.containsKey(BLOCK_VR)) trajectory.addVrHistory(blocks.get(BLOCK_VR));
+                if (blocks.containsKey(BLOCK_VTH)) trajectory.addVthHistory(blocks.get(BLOCK_VTH));
+                for (Map.Entry<String, float[]> block : blocks.entrySet()) {
+                    if (block.getKey().startsWith(BLOCK_CHANNEL_PREFIX)) {
+                        trajectory.addHistory(block.getKey().substring(BLOCK_CHANNEL_PREFIX.length()), block.getValue());
+                    }
+                }
+                LOGGER.log(Level.FINE, "Trajectory loaded from cache {0}", cacheFile);
+            }
+            return trajectory;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            LOGGER.log(Level.FINE, "Cannot read cache {0}: {1}", new Object[]{ cacheFile, e });
+            return null;
+        }
+    }
+
+    /**
+     * Writes trajectory to cache file, nothing is written if source files changed meanwhile.
+     * Only histories, which are loaded, are written, so writing does not load the others.
+     * @param trajectory trajectory created from source files
+     */
+    public synchronized void write(Trajectory3D trajectory) {
+        for (Map.Entry<String, File> source : sourceFiles.entrySet()) {
+            if (source.getValue().length() != sizes.get(source.getKey())
+                    || source.getValue().lastModified() != modified.get(source.getKey())) {
+                LOGGER.log(Level.FINE, "Source {0} changed while loading, cache not written", source.getKey());
+                return;
+            }
+        }
+        File cacheFile = directory.canWrite() ? getSidecarFile() : getUserCacheFile();
+        if (cacheFile == null) {
+            return;
+        }
+        cacheFile.getParentFile().mkdirs();
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+
+        Map<String, float[]> blocks = new LinkedHashMap<>();
+        blocks.put(BLOCK_CONTROL_VERTICES, trajectory.getControlVertices());
+        blocks.put(BLOCK_SMOOTH_VERTICES, trajectory.getSmoothVertices());
+        blocks.put(BLOCK_SECTION_POINTS, trajectory.getSectionPoints());
+        blocks.put(BLOCK_TIMES, trajectory.getTimes());
+        HistoryChannels channels = trajectory.getChannels();
+        for (int channel = 0; channel < channels.size(); channel++) {
+            LazyHistory history = channels.get(channel);
+            if (history.isLoaded()) {
+                blocks.put(getBlockName(channels.getName(channel)), history.get());
+            }
+        }
+        blocks.values().removeAll(Collections.singleton(null));
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            writeFully(channel, createHeader(blocks));
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (float[] block : blocks.values()) {
+                writeBlock(channel, buffer, block);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot write cache {0}: {1}", new Object[]{ cacheFile, e });
+            tmpFile.delete();
+            return;
+        }
+        try {
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.FINE, "Trajectory cache written to {0}", cacheFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot write cache {0}: {1}", new Object[]{ cacheFile, e });
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * @param channel name of history channel
+     * @return name of block of the history
+     */
+    private static String getBlockName(String channel) {
+        switch (channel) {
+            case Trajectory3D.CHANNEL_PITCH:
+                return BLOCK_PITCH;
+            case Trajectory3D.CHANNEL_MASS:
+                return BLOCK_MASS;
+            case Trajectory3D.CHANNEL_VR:
+                return BLOCK_VR;
+            case Trajectory3D.CHANNEL_VTH:
+                return BLOCK_VTH;
+            default:
+                return BLOCK_CHANNEL_PREFIX + channel;
+        }
+    }
+
+    /**
+     * @return cache file in trajectory directory
+     */
+    private File getSidecarFile() {
+        return new File(directory, ProjectFiles.CACHE_FILE);
+    }
+
+    /**
+     * @return cache file in user cache directory, named after trajectory directory, or null
+     */
+    private File getUserCacheFile() {
+        try {
+            String name = Integer.toHexString(directory.getCanonicalPath().hashCode());
+            return new File(ProjectFiles.CACHE_DIRECTORY, name.concat("-").concat(ProjectFiles.CACHE_FILE));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compares source files described in header with current source files
+     * @param buf cache positioned at source count
+     * @return true if cache was created from the same source files
+     */
+    private boolean readSources(ByteBuffer buf) throws IOException {
+        int count = buf.getInt();
+        if (count != sourceFiles.size()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            String name = readName(buf);
+            long size = buf.getLong();
+            long lastModified = buf.getLong();
+            long checksum = buf.getLong();
+            File source = sourceFiles.get(name);
+            if (source == null || sizes.get(name) != size) {
+                return false;
+            }
+            if (modified.get(name) != lastModified && checksum(source) != checksum) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads block table and all blocks
+     * @param buf cache positioned at block count
+     * @return blocks by name, in order of block table
+     */
+    private Map<String, float[]> readBlocks(ByteBuffer buf) {
+        int count = buf.getInt();
+        List<String> names = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(readName(buf));
+            lengths.add(buf.getInt());
+        }
+        buf.position(align(buf.position()));
+        Map<String, float[]> blocks = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            float[] block = new float[lengths.get(i)];
+            buf.asFloatBuffer().get(block);
+            buf.position(buf.position() + 4 * block.length);
+            blocks.put(names.get(i), block);
+        }
+        return blocks;
+    }
+
+    /**
+     * Creates header with source files description and block table
+     * @param blocks written blocks by name
+     * @return header ready to be written
+     */
+    private ByteBuffer createHeader(Map<String, float[]> blocks) throws IOException {
+        int size = 3 * 4 + 2 + smoothing.getKey().getBytes(StandardCharsets.UTF_8).length + 4;
+        for (String name : sourceFiles.keySet()) {
+            size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 3 * 8;
+        }
+        for (String name : blocks.keySet()) {
+            size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 4;
+        }
+        ByteBuffer header = ByteBuffer.allocate(align(size)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+        putName(header, smoothing.getKey());
+        header.putInt(sourceFiles.size());
+        for (Map.Entry<String, File> source : sourceFiles.entrySet()) {
+            putName(header, source.getKey());
+            header.putLong(sizes.get(source.getKey()));
+            header.putLong(modified.get(source.getKey()));
+            header.putLong(checksum(source.getValue()));
+        }
+        header.putInt(blocks.size());
+        for (Map.Entry<String, float[]> block : blocks.entrySet()) {
+            putName(header, block.getKey());
+            header.putInt(block.getValue().length);
+        }
+        header.position(0);
+        return header;
+    }
+
+    /**
+     * Writes float block through buffer
+     * @param channel output
+     * @param buffer write buffer
+     * @param block the block
+     */
+    private void writeBlock(FileChannel channel, ByteBuffer buffer, float[] block) throws IOException {
+        for (float value : block) {
+            if (buffer.remaining() < 4) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+            buffer.putFloat(value);
+        }
+    }
+
+    /**
+     * Writes whole buffer to channel
+     * @param channel output
+     * @param buffer flipped buffer
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Computes CRC32 of file content
+     * @param file the file
+     * @return checksum
+     */
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAX_WINDOW) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void putName(ByteBuffer buf, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param position byte position
+     * @return position rounded up to multiple of 4, so float blocks are aligned
+     */
+    private static int align(int position) {
+        return (position + 3) & ~3;
+    }
+}
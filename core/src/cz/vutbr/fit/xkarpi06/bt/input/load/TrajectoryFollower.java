@@ -0,0 +1,235 @@
+package cz.vutbr.fit.xkarpi06.bt.input.load;
+
+import com.badlogic.gdx.Gdx;
+import cz.vutbr.fit.xkarpi06.bt.model.Simulation;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectorySamples;
+import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming mode for trajectory, which is still being written
+ *
+ * Keeps read position of every source file and periodically checks them for appended
+ * bytes. Only new complete lines are parsed, on background thread, and the new samples
+ * are handed to {@link Simulation} on render thread.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectoryFollower {
+
+    /** Logger instance */
+    public static final Logger LOGGER = MyLog.getLogger( TrajectoryFollower.class.getName() );
+
+    /** Default time between two checks of source files in milliseconds */
+    public static final long DEFAULT_INTERVAL = 500;
+
+    /** Source directory of data */
+    private final String dir;
+
+    /** Time between two checks of source files in milliseconds */
+    private final long interval;
+
+    /** Smoothing of followed trajectory */
+    private final Smoothing smoothing;
+
+    /** Name of followed vertex source file, or telemetry file, which contains all channels */
+    private String vertexFile;
+
+    /** Readers remembering position in each source file, by file name */
+    private final Map<String, MappedChannelReader> readers = new HashMap<>();
+
+    /** Progress of initial load, null after it */
+    private LoadingProgress progress;
+
+    /** Polling thread, null if not started */
+    private ScheduledExecutorService executor;
+
+    /** True after stop, samples read meanwhile are not published */
+    private volatile boolean stopped = false;
+
+    /**
+     * Constructor
+     * @param directory trajectory directory
+     * @param interval time between two checks of source files in milliseconds
+     */
+    public TrajectoryFollower(String directory, long interval) {
+        this(directory, interval, Trajectory3DLoader.DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Constructor
+     * @param directory trajectory directory
+     * @param interval time between two checks of source files in milliseconds
+     * @param smoothing how smooth vertices are created
+     */
+    public TrajectoryFollower(String directory, long interval, Smoothing smoothing) {
+        this.dir = directory;
+        this.interval = interval;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Loads complete lines currently present in source files
+     * @return Trajectory3D if successful, null otherwise
+     */
+    public Trajectory3D load() {
+        return load(null);
+    }
+
+    /**
+     * Loads complete lines currently present in source files and reports progress
+     * @param progress receives loaded files and processed bytes, can be null
+     * @return Trajectory3D if successful, null otherwise
+     */
+    public Trajectory3D load(LoadingProgress progress) {
+        LOGGER.log(Level.FINE, "Trying to follow data in {0}", dir);
+        File dataDirectory = new File(dir);
+        if (!dataDirectory.isDirectory()) {
+            LOGGER.log(Level.SEVERE, "Directory does not exist: {0}", dir);
+            return null;
+        }
+        Map<String, File> sourceFiles = Trajectory3DLoader.listSourceFiles(dataDirectory);
+        if (sourceFiles.containsKey(ProjectFiles.SRC_TELEMETRY)) {
+            vertexFile = ProjectFiles.SRC_TELEMETRY;
+        } else if (sourceFiles.containsKey(ProjectFiles.SRC_TRAJECTORY_POLAR)) {
+            vertexFile = ProjectFiles.SRC_TRAJECTORY_POLAR;
+        } else if (sourceFiles.containsKey(ProjectFiles.SRC_TRAJECTORY_CARTESIAN)) {
+            vertexFile = ProjectFiles.SRC_TRAJECTORY_CARTESIAN;
+        } else {
+            System.err.printf("Missing source files. Provide one of: %s, %s or %s.\n", ProjectFiles.SRC_TELEMETRY, ProjectFiles.SRC_TRAJECTORY_POLAR, ProjectFiles.SRC_TRAJECTORY_CARTESIAN);
+            return null;
+        }
+        if (progress != null) {
+            Trajectory3DLoader.registerSourceFiles(sourceFiles, progress, true);
+        }
+        this.progress = progress;
+        TrajectorySamples samples = readAppended();
+        this.progress = null;
+        for (MappedChannelReader reader : readers.values()) {
+            reader.setProgress(null);
+        }
+        if (samples == null) {
+            return null;
+        }
+        Trajectory3D trajectory = Trajectory3D.create(samples.vertices, samples.times, smoothing);
+        if (trajectory == null) {
+            System.err.printf("Trajectory NOT CREATED. Not enough complete lines in %s or %s.\n", vertexFile, ProjectFiles.SRC_TIMES);
+            return null;
+        }
+        trajectory.addPitchHistory(samples.pitch);
+        trajectory.addMassHistory(samples.mass);
+        trajectory.addVrHistory(samples.vr);
+        trajectory.addVthHistory(samples.vth);
+        for (Map.Entry<String, float[]> channel : samples.channels.entrySet()) {
+            trajectory.addHistory(channel.getKey(), channel.getValue());
+        }
+        return trajectory;
+    }
+
+    /**
+     * Starts checking source files for appended data
+     * @param sim simulation which receives new samples, its trajectory has to be the loaded one
+     */
+    public void start(final Simulation sim) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "trajectory-follower");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    publish(sim, readAppended());
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    LOGGER.log(Level.SEVERE, "Following {0} failed", dir);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking source files, samples which are already read are dropped
+     */
+    public void stop() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands new samples to simulation on render thread
+     * @param sim the simulation
+     * @param samples new samples
+     */
+    private void publish(final Simulation sim, final TrajectorySamples samples) {
+        if (samples == null || samples.isEmpty()) {
+            return;
+        }
+        LOGGER.log(Level.FINE, "Appending {0} vertices and {1} times", new Object[]{ samples.vertices.length / Trajectory3D.VERTEX_SIZE, samples.times.length });
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                if (!stopped) {
+                    sim.append(samples);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads complete lines appended to every source file since previous call
+     * @return new samples, null if telemetry file has invalid header
+     */
+    private TrajectorySamples readAppended() {
+        if (vertexFile.equals(ProjectFiles.SRC_TELEMETRY)) {
+            float[] rows = readAppended(vertexFile);
+            MappedChannelReader reader = readers.get(vertexFile);
+            return Trajectory3DLoader.toSamples(rows, (reader == null) ? null : reader.getHeader());
+        }
+        return new TrajectorySamples(readAppended(vertexFile), readAppended(ProjectFiles.SRC_TIMES),
+                readAppended(ProjectFiles.SRC_PITCH), readAppended(ProjectFiles.SRC_MASS),
+                readAppended(ProjectFiles.SRC_VR), readAppended(ProjectFiles.SRC_VTH));
+    }
+
+    /**
+     * Reads complete lines appended to source file since previous call, file does not need to exist yet
+     * @param sourceFile name of source file
+     * @return new values
+     */
+    private float[] readAppended(String sourceFile) {
+        File file = ProjectFiles.findSourceFile(new File(dir), sourceFile);
+        if (file == null) {
+            return new float[0];
+        }
+        MappedChannelReader reader = readers.get(sourceFile);
+        if (reader == null) {
+            reader = sourceFile.equals(vertexFile)
+                    ? Trajectory3DLoader.createVertexReader(dir, sourceFile)
+                    : new MappedChannelReader(dir, sourceFile);
+            reader.setProgress(progress);
+            readers.put(sourceFile, reader);
+        }
+        return reader.readAppended(file);
+    }
+}
@@ -0,0 +1,223 @@
+package cz.vutbr.fit.xkarpi06.bt.input.load;
+
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps recently loaded trajectories in memory, so switching between directories is instant
+ *
+ * Trajectories are kept by canonical path of their directory together with fingerprint
+ * of source files, which makes changed sources load again. Least recently used trajectories
+ * are disposed when memory budget is exceeded. Memory of trajectory grows after it is cached,
+ * when its histories are loaded or its vertices are coloured, so sizes are measured again before evicting.
+ * Trajectories in use can be pinned, pinned trajectories are never evicted, but their memory counts.
+ * Disposing releases GL resources, so methods have to be called from render thread.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectoryLruCache {
+
+    /** Logger instance */
+    public static final Logger LOGGER = MyLog.getLogger( TrajectoryLruCache.class.getName() );
+
+    /** Default memory budget, quarter of heap */
+    public static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+    /** Memory budget in bytes */
+    private final long budget;
+
+    /** Entries by canonical directory path, least recently used first */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Estimated memory taken by all entries, as it was measured last time */
+    private long usedBytes = 0;
+
+    /** Trajectories, which are never evicted */
+    private Trajectory3D[] pinned = new Trajectory3D[0];
+
+    /**
+     * Constructor
+     * @param budget memory budget in bytes, the most recent trajectory is kept even if it is bigger
+     */
+    public TrajectoryLruCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Creates fingerprint of source files in directory from their names, sizes and modification times
+     * and of smoothing, which changes created trajectory as well
+     * @param directory trajectory directory
+     * @param smoothing smoothing of trajectory
+     * @return fingerprint, null if directory does not exist
+     */
+    public static String fingerprint(String directory, Smoothing smoothing) {
+        File dataDirectory = (directory == null) ? null : new File(directory);
+        if (dataDirectory == null || !dataDirectory.isDirectory()) {
+            return null;
+        }
+        StringBuilder fingerprint = new StringBuilder(smoothing.getKey()).append(';');
+        Map<String, File> sourceFiles = new TreeMap<>(Trajectory3DLoader.listSourceFiles(dataDirectory));
+        for (Map.Entry<String, File> source : sourceFiles.entrySet()) {
+            fingerprint.append(source.getKey()).append(':')
+                    .append(source.getValue().length()).append(':')
+                    .append(source.getValue().lastModified()).append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Finds trajectory loaded from directory, stale trajectory is disposed
+     * @param directory trajectory directory
+     * @param fingerprint current fingerprint of directory
+     * @return the trajectory, or null if it is not cached or its sources changed
+     */
+    public Trajectory3D get(String directory, String fingerprint) {
+        String key = canonicalPath(directory);
+        Entry entry = (key == null) ? null : entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            LOGGER.log(Level.FINE, "Source files changed, dropping cached trajectory of {0}", key);
+            remove(key);
+            return null;
+        }
+        LOGGER.log(Level.FINE, "Using trajectory of {0} from memory", key);
+        evict();
+        return entry.trajectory;
+    }
+
+    /**
+     * Adds trajectory, evicts least recently used ones if budget is exceeded
+     * @param directory trajectory directory
+     * @param fingerprint fingerprint of directory before the trajectory was loaded, null to skip caching
+     * @param trajectory loaded trajectory
+     */
+    public void put(String directory, String fingerprint, Trajectory3D trajectory) {
+        String key = canonicalPath(directory);
+        if (key == null || fingerprint == null) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+            if (previous.trajectory != trajectory) {
+                previous.trajectory.dispose();
+            }
+        }
+        Entry entry = new Entry(fingerprint, trajectory);
+        entries.put(key, entry);
+        usedBytes += entry.bytes;
+        evict();
+    }
+
+    /**
+     * Sets trajectories, which are in use and must not be evicted, replaces previously pinned ones
+     * @param trajectories the trajectories, null ones are ignored
+     */
+    public void setPinned(Trajectory3D... trajectories) {
+        pinned = trajectories.clone();
+    }
+
+    /**
+     * Measures memory of all entries again, evicts least recently used ones if budget is exceeded.
+     * The most recently used trajectory and pinned ones are never evicted.
+     */
+    private void evict() {
+        usedBytes = 0;
+        for (Entry entry : entries.values()) {
+            entry.bytes = entry.trajectory.getMemorySize();
+            usedBytes += entry.bytes;
+        }
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        // the most recently used entry is the last one
+        for (int older = entries.size() - 1; usedBytes > budget && older > 0; older--) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            if (isPinned(evicted.getValue().trajectory)) {
+                continue;
+            }
+            LOGGER.log(Level.FINE, "Evicting trajectory of {0}", evicted.getKey());
+            usedBytes -= evicted.getValue().bytes;
+            evicted.getValue().trajectory.dispose();
+            eldest.remove();
+        }
+    }
+
+    private boolean isPinned(Trajectory3D trajectory) {
+        for (Trajectory3D pinnedTrajectory : pinned) {
+            if (pinnedTrajectory == trajectory) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param trajectory the trajectory
+     * @return true if trajectory is kept by cache
+     */
+    public boolean contains(Trajectory3D trajectory) {
+        for (Entry entry : entries.values()) {
+            if (entry.trajectory == trajectory) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Disposes all trajectories
+     */
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            entry.trajectory.dispose();
+        }
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        usedBytes -= entry.bytes;
+        entry.trajectory.dispose();
+    }
+
+    private static String canonicalPath(String directory) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new File(directory).getCanonicalPath();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cached trajectory
+     */
+    private static class Entry {
+        final String fingerprint;
+        final Trajectory3D trajectory;
+
+        /** Memory of trajectory, as it was measured last time */
+        long bytes;
+
+        Entry(String fingerprint, Trajectory3D trajectory) {
+            this.fingerprint = fingerprint;
+            this.trajectory = trajectory;
+            this.bytes = trajectory.getMemorySize();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package cz.vutbr.fit.xkarpi06.bt.input.parse;
 
 import cz.vutbr.fit.xkarpi06.bt.input.load.ProjectFiles;
+import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.ColumnParsingStrategy;
 import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.FloatParser;
 import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.ParsingStrategy;
+import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.TelemetryParser;
 import cz.vutbr.fit.xkarpi06.bt.input.parse.strategy.TrajectoryParser;
 
+import java.nio.ByteBuffer;
+
 /**
  * Context for strategy design pattern
  * @author xkarpi06
@@ -14,12 +18,17 @@ public class StringParser {
 
     private ParsingStrategy strategy;
 
+    private ColumnParsingStrategy columnStrategy;
+
     /**
      * Constructor
      * @param strategy input
      */
     public StringParser(ParsingStrategy strategy) {
         this.strategy = strategy;
+        if (strategy instanceof ColumnParsingStrategy) {
+            this.columnStrategy = (ColumnParsingStrategy) strategy;
+        }
     }
 
     /**
@@ -28,25 +37,53 @@ public class StringParser {
      * @param fileName input
      */
     public StringParser(String fileName) {
+        this(fileName, null);
+    }
+
+    /**
+     * Smart Constructor
+     * Chooses strategy based on file name and header of file
+     * @param fileName input
+     * @param header first line of file, if the file has header (see {@link #hasHeader(String)})
+     */
+    public StringParser(String fileName, String header) {
         switch (fileName) {
+            case ProjectFiles.SRC_TELEMETRY:
+                TelemetryParser telemetryParser = (header == null) ? null : new TelemetryParser(header);
+                this.strategy = telemetryParser;
+                this.columnStrategy = telemetryParser;
+                break;
             case ProjectFiles.SRC_TRAJECTORY_POLAR:
             case ProjectFiles.SRC_TRAJECTORY_CARTESIAN:
-                this.strategy = new TrajectoryParser();
+                TrajectoryParser trajectoryParser = new TrajectoryParser();
+                this.strategy = trajectoryParser;
+                this.columnStrategy = trajectoryParser;
                 break;
             case ProjectFiles.SRC_TIMES:
             case ProjectFiles.SRC_PITCH:
             case ProjectFiles.SRC_MASS:
             case ProjectFiles.SRC_VR:
             case ProjectFiles.SRC_VTH:
-                this.strategy = new FloatParser();
+                FloatParser floatParser = new FloatParser();
+                this.strategy = floatParser;
+                this.columnStrategy = floatParser;
                 break;
 
             default:
                 this.strategy = null;
+                this.columnStrategy = null;
                 break;
         }
     }
 
+    /**
+     * @param fileName input
+     * @return true if first line of file is header, which is needed to choose strategy
+     */
+    public static boolean hasHeader(String fileName) {
+        return ProjectFiles.SRC_TELEMETRY.equals(fileName);
+    }
+
     /**
      * Executes particular strategy how to parse line to Object
      * @param line input
@@ -55,4 +92,24 @@ public class StringParser {
     public Object exectueStrategy(String line) {
         return (this.strategy == null) ? null : this.strategy.parseLine(line);
     }
+
+    /**
+     * @return amount of values stored for every line by column strategy, 0 if there is none
+     */
+    public int getVariableCount() {
+        return (this.columnStrategy == null) ? 0 : this.columnStrategy.getVariableCount();
+    }
+
+    /**
+     * Executes particular strategy how to parse line from bytes into float array
+     * @param buf input bytes
+     * @param start first byte of line
+     * @param end byte after line
+     * @param values output array
+     * @param offset index of first value of line in values
+     * @return true if line is valid, false if it is not or there is no column strategy
+     */
+    public boolean executeColumnStrategy(ByteBuffer buf, int start, int end, float[] values, int offset) {
+        return this.columnStrategy != null && this.columnStrategy.parseLine(buf, start, end, values, offset);
+    }
 }
@@ -0,0 +1,39 @@
+package cz.vutbr.fit.xkarpi06.bt.input.parse.strategy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strategy interface for parsing lines straight into primitive arrays
+ *
+ * Values of one line are stored at given offset of caller supplied array,
+ * so parsing of whole file does not create any object per line.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ */
+public interface ColumnParsingStrategy {
+
+    /**
+     * @return amount of values stored for every valid line
+     */
+    int getVariableCount();
+
+    /**
+     * Parses line from bytes
+     * @param buf input bytes, read by absolute index
+     * @param start first byte of line
+     * @param end byte after line, without line separator
+     * @param values output array
+     * @param offset index of first value of line in values
+     * @return true if line is valid, values are undefined otherwise
+     */
+    boolean parseLine(ByteBuffer buf, int start, int end, float[] values, int offset);
+
+    /**
+     * Parses line from String
+     * @param line input
+     * @param values output array
+     * @param offset index of first value of line in values
+     * @return true if line is valid, values are undefined otherwise
+     */
+    boolean parseLine(String line, float[] values, int offset);
+}
@@ -0,0 +1,104 @@
+package cz.vutbr.fit.xkarpi06.bt.input.parse.strategy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Common part of strategies for lines with fixed amount of delimited floats
+ *
+ * Values are split by delimiter and scanned by {@link FloatScanner} straight from bytes
+ * or chars, without regular expressions and exceptions, so invalid lines cost as much
+ * as valid ones. Lines are accepted the same way as by splitting them by
+ * {@link String#split(String)} and parsing values by {@link Float#parseFloat(String)}.
+ * Instances keep scanning state, one instance must not be shared between threads.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated: 18-10-2026, xkarpi06
+ */
+public abstract class DelimitedParser implements ParsingStrategy, ColumnParsingStrategy {
+
+    /** Amount of values on each line */
+    private final int variableCount;
+
+    /** Delimiter between values on one line */
+    private final String delimiter;
+
+    /** Delimiter as byte for scanning bytes */
+    private final byte delimiterByte;
+
+    /** Scanner of single values */
+    private final FloatScanner scanner = new FloatScanner();
+
+    /**
+     * Constructor
+     * @param variableCount amount of values on each line
+     * @param delimiter delimiter between values, single character
+     */
+    protected DelimitedParser(int variableCount, String delimiter) {
+        this.variableCount = variableCount;
+        this.delimiter = delimiter;
+        this.delimiterByte = (byte) delimiter.charAt(0);
+    }
+
+    /**
+     * Checks parsed values of line
+     * @param values parsed values
+     * @param offset index of first value of line
+     * @return true if values form valid line
+     */
+    protected abstract boolean isValid(float[] values, int offset);
+
+    @Override
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    @Override
+    public boolean parseLine(ByteBuffer buf, int start, int end, float[] values, int offset) {
+        int pos = start;
+        for (int i = 0; i < variableCount; i++) {
+            int tokenEnd = pos;
+            while (tokenEnd < end && buf.get(tokenEnd) != delimiterByte) {
+                tokenEnd++;
+            }
+            if ((tokenEnd == end && i < variableCount - 1) || !scanner.scan(buf, pos, tokenEnd)) {
+                return false;
+            }
+            values[offset + i] = scanner.getValue();
+            pos = tokenEnd + 1;
+        }
+        // String.split drops trailing empty values
+        for (; pos < end; pos++) {
+            if (buf.get(pos) != delimiterByte) {
+                return false;
+            }
+        }
+        return isValid(values, offset);
+    }
+
+    @Override
+    public boolean parseLine(String line, float[] values, int offset) {
+        int end = line.length();
+        int pos = 0;
+        for (int i = 0; i < variableCount; i++) {
+            int tokenEnd = line.indexOf(delimiter, pos);
+            if (tokenEnd < 0) {
+                if (i < variableCount - 1) {
+                    return false;
+                }
+                tokenEnd = end;
+            }
+            if (!scanner.scan(line, pos, tokenEnd)) {
+                return false;
+            }
+            values[offset + i] = scanner.getValue();
+            pos = tokenEnd + 1;
+        }
+        // String.split drops trailing empty values
+        for (; pos < end; pos++) {
+            if (line.charAt(pos) != delimiter.charAt(0)) {
+                return false;
+            }
+        }
+        return isValid(values, offset);
+    }
+}
@@ -1,15 +1,13 @@
 package cz.vutbr.fit.xkarpi06.bt.input.parse.strategy;
 
-import java.util.logging.Logger;
-
 /**
  * Strategy for strategy design pattern
  * reads line and returns Float
  * @author xkarpi06
  * created: 30-4-2020, xkarpi06
- * updated:
+ * updated: 18-10-2026, xkarpi06
  */
-public class FloatParser implements ParsingStrategy {
+public class FloatParser extends DelimitedParser {
 
     // format: float
 
@@ -28,18 +26,18 @@ public class FloatParser implements ParsingStrategy {
      */
     public static final int FL_INDEX = 0;
 
+    public FloatParser() {
+        super(VARIABLE_COUNT, DELIMITER);
+    }
+
     @Override
     public Float parseLine(String line) {
-        Float result = null;
-        String[] variables = line.split(DELIMITER);
-        if (variables.length == VARIABLE_COUNT) {
-            try {
-                result = Float.parseFloat(variables[FL_INDEX]);
-            } catch (NumberFormatException ex) {
-                ex.printStackTrace();
-                return null;
-            }
-        }
-        return result;
+        float[] variables = new float[VARIABLE_COUNT];
+        return parseLine(line, variables, 0) ? variables[FL_INDEX] : null;
+    }
+
+    @Override
+    protected boolean isValid(float[] values, int offset) {
+        return true;
     }
 }
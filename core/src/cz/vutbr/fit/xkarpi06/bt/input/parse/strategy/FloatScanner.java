@@ -0,0 +1,231 @@
+package cz.vutbr.fit.xkarpi06.bt.input.parse.strategy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scans float in decimal or scientific notation from range of bytes or chars
+ *
+ * Accepts the same decimal tokens as {@link Float#parseFloat(String)}, including surrounding
+ * whitespace, NaN, Infinity and f/d suffix, and gives the same value. Hexadecimal floats
+ * are not supported. Invalid tokens are reported by return value, no exception is thrown.
+ * Values which can not be converted exactly by single double operation are passed to
+ * {@link Float#parseFloat(String)} after the token was checked, which is rare for measured data.
+ * Instances keep scanned value, one instance must not be shared between threads.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class FloatScanner {
+
+    /** Most significant digits of one value accumulated in long */
+    private static final int MAX_DIGITS = 18;
+
+    /** Mantissa limit, bigger values are not exactly representable in double */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Exponent bound, anything bigger is out of float range anyway */
+    private static final int MAX_EXPONENT = 1000;
+
+    /** Powers of ten exactly representable in double */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final char[] NAN = "NaN".toCharArray();
+
+    private static final char[] INFINITY = "Infinity".toCharArray();
+
+    /** Reusable copy of scanned token */
+    private char[] token = new char[32];
+
+    /** Last scanned value */
+    private float value;
+
+    /**
+     * @return value of last successfully scanned token
+     */
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * Scans token from bytes, every byte is one character
+     * @param buf input bytes
+     * @param start first byte of token
+     * @param end byte after token
+     * @return true if whole range is valid float, its value is available by getValue()
+     */
+    public boolean scan(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        ensureToken(length);
+        for (int i = 0; i < length; i++) {
+            token[i] = (char) (buf.get(start + i) & 0xff);
+        }
+        return scanToken(length);
+    }
+
+    /**
+     * Scans token from chars
+     * @param chars input chars
+     * @param start first char of token
+     * @param end char after token
+     * @return true if whole range is valid float, its value is available by getValue()
+     */
+    public boolean scan(CharSequence chars, int start, int end) {
+        int length = end - start;
+        ensureToken(length);
+        for (int i = 0; i < length; i++) {
+            token[i] = chars.charAt(start + i);
+        }
+        return scanToken(length);
+    }
+
+    private void ensureToken(int length) {
+        if (token.length < length) {
+            token = new char[Math.max(length, 2 * token.length)];
+        }
+    }
+
+    /**
+     * Scans token copied to token array
+     * @param length length of token
+     * @return true if token is valid float
+     */
+    private boolean scanToken(int length) {
+        int pos = 0;
+        int end = length;
+        // whitespace is trimmed the same way as by Float.parseFloat
+        while (pos < end && token[pos] <= ' ') {
+            pos++;
+        }
+        while (end > pos && token[end - 1] <= ' ') {
+            end--;
+        }
+        int first = pos;
+        int last = end;
+
+        boolean negative = false;
+        if (pos < end && (token[pos] == '-' || token[pos] == '+')) {
+            negative = token[pos] == '-';
+            pos++;
+        }
+        if (pos < end && (token[pos] == 'N' || token[pos] == 'I')) {
+            if (matches(pos, end, NAN)) {
+                value = Float.NaN;
+                return true;
+            }
+            if (matches(pos, end, INFINITY)) {
+                value = negative ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+                return true;
+            }
+            return false;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        boolean exact = true;
+        for (; pos < end; pos++) {
+            char c = token[pos];
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > MAX_DIGITS) {
+                        exact = false;
+                        continue;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    exponent--;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return false;
+        }
+        if (pos < end && (token[pos] == 'e' || token[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (token[pos] == '-' || token[pos] == '+')) {
+                negativeExponent = token[pos] == '-';
+                pos++;
+            }
+            int explicitExponent = 0;
+            int start = pos;
+            while (pos < end && token[pos] >= '0' && token[pos] <= '9') {
+                if (explicitExponent < MAX_EXPONENT) {
+                    explicitExponent = explicitExponent * 10 + (token[pos] - '0');
+                }
+                pos++;
+            }
+            if (pos == start) {
+                return false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (pos < end && "fFdD".indexOf(token[pos]) >= 0) {
+            pos++;
+        }
+        if (pos != end) {
+            return false;
+        }
+
+        if (mantissa == 0 && exact) {
+            value = negative ? -0f : 0f;
+            return true;
+        }
+        if (!exact || !convert(mantissa, exponent)) {
+            // token is valid, so parseFloat can not throw
+            value = Float.parseFloat(new String(token, first, last - first));
+            return true;
+        }
+        if (negative) {
+            value = -value;
+        }
+        return true;
+    }
+
+    /**
+     * Converts mantissa and exponent to float by single correctly rounded operation, sets value
+     * @param mantissa decimal digits
+     * @param exponent power of ten
+     * @return false if the result could differ from Float.parseFloat
+     */
+    private boolean convert(long mantissa, int exponent) {
+        if (mantissa >= MAX_EXACT_MANTISSA || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            return false;
+        }
+        // single operation on exact operands, result is correctly rounded double
+        double exact = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        float rounded = (float) exact;
+        if (rounded != exact) {
+            // rounding twice is wrong only if the double is exactly halfway between two floats
+            float neighbour = (exact > rounded) ? Math.nextUp(rounded) : Math.nextAfter(rounded, Double.NEGATIVE_INFINITY);
+            if (((double) rounded + (double) neighbour) / 2 == exact) {
+                return false;
+            }
+        }
+        value = rounded;
+        return true;
+    }
+
+    private boolean matches(int pos, int end, char[] word) {
+        if (end - pos != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (token[pos + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
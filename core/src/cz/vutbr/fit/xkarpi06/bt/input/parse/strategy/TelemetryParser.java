@@ -0,0 +1,114 @@
+package cz.vutbr.fit.xkarpi06.bt.input.parse.strategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Strategy for strategy design pattern
+ * reads line of combined telemetry file and returns float[] with value of every column
+ *
+ * Columns are named by header, which is the first line of the file. Known columns are
+ * time, r,theta,phi or x,y,z, pitch, mass, vr and vth, other columns are histories named by their column.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TelemetryParser extends DelimitedParser {
+
+    // format: header with column names, e.g. time,r,theta,phi,pitch,mass,vr,vth
+    //         then lines of values in the same order
+
+    /** Delimiter of columns, in header too */
+    public static final String DELIMITER = ",";
+
+    /** Column names */
+    public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_R = "r";
+    public static final String COLUMN_THETA = "theta";
+    public static final String COLUMN_PHI = "phi";
+    public static final String COLUMN_X = "x";
+    public static final String COLUMN_Y = "y";
+    public static final String COLUMN_Z = "z";
+    public static final String COLUMN_PITCH = "pitch";
+    public static final String COLUMN_MASS = "mass";
+    public static final String COLUMN_VR = "vr";
+    public static final String COLUMN_VTH = "vth";
+
+    /** Columns with fixed meaning */
+    private static final List<String> KNOWN_COLUMNS = Arrays.asList(COLUMN_TIME, COLUMN_R, COLUMN_THETA, COLUMN_PHI,
+            COLUMN_X, COLUMN_Y, COLUMN_Z, COLUMN_PITCH, COLUMN_MASS, COLUMN_VR, COLUMN_VTH);
+
+    /** Column names in file order, lower case */
+    private final List<String> columns;
+
+    /** Index of r column, -1 if trajectory is in cartesian form */
+    private final int rIndex;
+
+    /**
+     * Constructor
+     * @param header first line of file with column names
+     */
+    public TelemetryParser(String header) {
+        super(parseHeader(header).size(), DELIMITER);
+        this.columns = parseHeader(header);
+        this.rIndex = getColumnIndex(COLUMN_R);
+    }
+
+    private static List<String> parseHeader(String header) {
+        String[] names = header.trim().toLowerCase(Locale.ROOT).split(DELIMITER);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+        }
+        return Arrays.asList(names);
+    }
+
+    /**
+     * @param column column name
+     * @return index of column in line, -1 if there is no such column
+     */
+    public int getColumnIndex(String column) {
+        return columns.indexOf(column);
+    }
+
+    /**
+     * @param index index of column in line
+     * @return column name, lower case
+     */
+    public String getColumnName(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * @param column column name
+     * @return true if column has fixed meaning, false if it is other history
+     */
+    public static boolean isKnownColumn(String column) {
+        return KNOWN_COLUMNS.contains(column);
+    }
+
+    /**
+     * @return true if trajectory is given in polar form by r,theta,phi columns
+     */
+    public boolean isPolar() {
+        return rIndex >= 0 && getColumnIndex(COLUMN_THETA) >= 0 && getColumnIndex(COLUMN_PHI) >= 0;
+    }
+
+    /**
+     * @return true if trajectory is given in cartesian form by x,y,z columns
+     */
+    public boolean isCartesian() {
+        return getColumnIndex(COLUMN_X) >= 0 && getColumnIndex(COLUMN_Y) >= 0 && getColumnIndex(COLUMN_Z) >= 0;
+    }
+
+    @Override
+    public float[] parseLine(String line) {
+        float[] variables = new float[getVariableCount()];
+        return parseLine(line, variables, 0) ? variables : null;
+    }
+
+    @Override
+    protected boolean isValid(float[] values, int offset) {
+        return rIndex < 0 || values[offset + rIndex] >= 0;
+    }
+}
@@ -7,9 +7,9 @@ import com.badlogic.gdx.math.Vector3;
  * reads line and returns Vector3
  * @author xkarpi06
  * created: 19-4-2020, xkarpi06
- * updated:
+ * updated: 18-10-2026, xkarpi06
  */
-public class TrajectoryParser implements ParsingStrategy{
+public class TrajectoryParser extends DelimitedParser {
 
     // format: r,theta,phi
     //     or: x,y,z
@@ -29,26 +29,21 @@ public class TrajectoryParser implements ParsingStrategy{
     /** Order in input file line */
     public static final int PHIorZ_INDEX = 2;
 
+    public TrajectoryParser() {
+        super(VARIABLE_COUNT, DELIMITER);
+    }
+
     @Override
     public Vector3 parseLine(String line) {
-        Vector3 result = null;
-        String[] variables = line.split(DELIMITER);
-        if (variables.length == VARIABLE_COUNT) {
-            float var1;
-            float var2;
-            float var3;
-            try {
-                var1 = Float.parseFloat(variables[RorX_INDEX]);
-                var2 = Float.parseFloat(variables[THETAorY_INDEX]);
-                var3 = Float.parseFloat(variables[PHIorZ_INDEX]);
-            } catch (NumberFormatException ex) {
-                ex.printStackTrace();
-                return null;
-            }
-            if (var1 >= 0) {
-                result = new Vector3(var1, var2, var3);
-            }
+        float[] variables = new float[VARIABLE_COUNT];
+        if (!parseLine(line, variables, 0)) {
+            return null;
         }
-        return result;
+        return new Vector3(variables[RorX_INDEX], variables[THETAorY_INDEX], variables[PHIorZ_INDEX]);
+    }
+
+    @Override
+    protected boolean isValid(float[] values, int offset) {
+        return values[offset + RorX_INDEX] >= 0;
     }
 }
@@ -0,0 +1,269 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of named histories of trajectory, which are sampled together
+ *
+ * Channels keep their order of registration, index of channel is its place in output
+ * of {@link #sampleAll(float, float[])}. For sampling, loaded channels with the same amount
+ * of samples form a group, so index and fraction are computed once for every group and values
+ * are interpolated directly from arrays of histories, nothing is copied. Groups are immutable
+ * and replaced as a whole when a channel is added, appended or loaded, so any thread can sample without locking.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class HistoryChannels {
+
+    private final List<String> names = new CopyOnWriteArrayList<>();
+    private final List<LazyHistory> histories = new CopyOnWriteArrayList<>();
+
+    /** Groups of loaded channels, replaced when channels change */
+    private volatile Sampling sampling = new Sampling(0, new Group[0], new LazyHistory[0]);
+
+    /**
+     * Loaded channels with the same amount of samples, values of channel channels[i] are values[i]
+     */
+    private static class Group {
+        final int sampleCount;
+        final int[] channels;
+        final float[][] values;
+
+        Group(int sampleCount, int[] channels, float[][] values) {
+            this.sampleCount = sampleCount;
+            this.channels = channels;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Groups of channels loaded at the time of creation, with histories which were still loading
+     */
+    private static class Sampling {
+        final int size;
+        final Group[] groups;
+        final LazyHistory[] pending;
+
+        Sampling(int size, Group[] groups, LazyHistory[] pending) {
+            this.size = size;
+            this.groups = groups;
+            this.pending = pending;
+        }
+
+        /**
+         * @return true if some history loaded after creation of groups
+         */
+        boolean isOutdated() {
+            for (LazyHistory history : pending) {
+                if (history.isLoaded()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Registers channel, replaces history of channel with the same name
+     * @param name name of channel
+     * @param history the history
+     * @return index of channel
+     */
+    public synchronized int add(String name, LazyHistory history) {
+        int channel = names.indexOf(name);
+        if (channel < 0) {
+            channel = names.size();
+            histories.add(history);
+            names.add(name);
+        } else {
+            histories.set(channel, history);
+        }
+        sampling = createSampling();
+        return channel;
+    }
+
+    /**
+     * Appends values to history of channel, registers new channel if there is no history to append to
+     * @param name name of channel
+     * @param values new values
+     * @return index of channel
+     */
+    public synchronized int append(String name, float[] values) {
+        int channel = names.indexOf(name);
+        if (channel < 0 || !histories.get(channel).append(values)) {
+            return add(name, LazyHistory.of(values));
+        }
+        sampling = createSampling();
+        return channel;
+    }
+
+    /**
+     * @return amount of channels
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @param name name of channel
+     * @return index of channel, -1 if there is no such channel
+     */
+    public int indexOf(String name) {
+        return names.indexOf(name);
+    }
+
+    /**
+     * @param channel index of channel
+     * @return name of channel
+     */
+    public String getName(int channel) {
+        return names.get(channel);
+    }
+
+    /**
+     * @param channel index of channel
+     * @return history of channel
+     */
+    public LazyHistory get(int channel) {
+        return histories.get(channel);
+    }
+
+    /**
+     * @return true if every channel is loaded
+     */
+    public boolean isLoaded() {
+        for (LazyHistory history : histories) {
+            if (!history.isLoaded()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns value of one channel at specified position, the first access loads the channel
+     * @param channel index of channel, -1 for missing channel
+     * @param position value from interval [0,1]
+     * @return value interpolated between samples, 0 for invalid position or missing history
+     */
+    public float valueAt(int channel, float position) {
+        if (channel < 0) {
+            return 0;
+        }
+        LazyHistory history = histories.get(channel);
+        int count = history.size();
+        float[] values = history.getValues();
+        if (values == null) {
+            return 0;
+        } else if (count == 1) {
+            return values[0];
+        } else if (position >= 0 && position < 1) {
+            float floatIndex = position * (count - 1);
+            float valueBefore = values[(int) floatIndex];
+            float valueAfter = values[(int) floatIndex + 1];
+            return valueBefore + (valueAfter - valueBefore) * (floatIndex - ((int) floatIndex));
+        } else if (position == 1) {
+            return values[count - 1];
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns values of all channels at specified position, channels which are not loaded
+     * are not loaded by it and give 0. Every value of loaded channel is the same
+     * as the one given by {@link #valueAt(int, float)}.
+     * @param position value from interval [0,1]
+     * @param out receives value of each channel at its index, at least {@link #size()} long
+     */
+    public void sampleAll(float position, float[] out) {
+        Sampling current = sampling;
+        if (current.isOutdated()) {
+            current = updateSampling();
+        }
+        for (int channel = 0; channel < current.size; channel++) {
+            out[channel] = 0;   // missing and not loaded histories
+        }
+        for (Group group : current.groups) {
+            int width = group.channels.length;
+            if (group.sampleCount == 1 || position == 1) {
+                int last = group.sampleCount - 1;
+                for (int i = 0; i < width; i++) {
+                    out[group.channels[i]] = group.values[i][last];
+                }
+            } else if (position >= 0 && position < 1) {
+                float floatIndex = position * (group.sampleCount - 1);
+                float fraction = floatIndex - ((int) floatIndex);
+                int before = (int) floatIndex;
+                for (int i = 0; i < width; i++) {
+                    float[] values = group.values[i];
+                    float valueBefore = values[before];
+                    out[group.channels[i]] = valueBefore + (values[before + 1] - valueBefore) * fraction;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces groups, which do not contain newly loaded channels
+     * @return the new groups
+     */
+    private synchronized Sampling updateSampling() {
+        if (sampling.isOutdated()) {
+            sampling = createSampling();
+        }
+        return sampling;
+    }
+
+    /**
+     * Groups loaded channels by their amount of samples, without loading the others
+     * @return the groups
+     */
+    private Sampling createSampling() {
+        Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+        List<LazyHistory> pending = new ArrayList<>();
+        int size = histories.size();
+        for (int channel = 0; channel < size; channel++) {
+            LazyHistory history = histories.get(channel);
+            if (!history.isLoaded()) {
+                pending.add(history);
+                continue;
+            }
+            int count = history.size();
+            if (count > 0) {
+                if (!members.containsKey(count)) {
+                    members.put(count, new ArrayList<Integer>());
+                }
+                members.get(count).add(channel);
+            }
+        }
+        Group[] groups = new Group[members.size()];
+        int g = 0;
+        for (Map.Entry<Integer, List<Integer>> member : members.entrySet()) {
+            int[] channels = new int[member.getValue().size()];
+            float[][] values = new float[channels.length][];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = member.getValue().get(i);
+                values[i] = histories.get(channels[i]).getValues();     // read after its size, so it has room for them
+            }
+            groups[g++] = new Group(member.getKey(), channels, values);
+        }
+        return new Sampling(size, groups, pending.toArray(new LazyHistory[0]));
+    }
+
+    /**
+     * @return size of loaded channels and their summaries in bytes
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for (LazyHistory history : histories) {
+            size += history.getMemorySize();
+        }
+        return size;
+    }
+}
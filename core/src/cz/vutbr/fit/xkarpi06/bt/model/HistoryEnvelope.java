@@ -0,0 +1,206 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution min/max/mean summary of history for plotting
+ *
+ * Samples are spread equally across trajectory positions [0,1] like in {@link Trajectory3D}.
+ * Level l summarizes blocks of BRANCHING^l samples, level 0 are the samples themselves.
+ * Range of positions is summarized into buckets from the coarsest level, whose blocks are
+ * at most 1/BRANCHING of bucket width, so one bucket takes at most BRANCHING^2 blocks
+ * and the work depends on amount of buckets only. Bucket edges are moved to block edges,
+ * by less than 1/BRANCHING of bucket width.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class HistoryEnvelope {
+
+    /** Amount of blocks of one level summarized by block of next level */
+    public static final int BRANCHING = 8;
+
+    private float[] samples;
+    private int sampleCount;
+
+    /** Amount of levels above samples */
+    private int levels;
+
+    /** Minimum, maximum and sum of each block of levels 1, 2, ..., arrays have room for appended blocks */
+    private float[][] minimums = new float[0][];
+    private float[][] maximums = new float[0][];
+    private double[][] sums = new double[0][];
+
+    /** Amount of valid blocks of each level */
+    private int[] blockCounts = new int[0];
+
+    /**
+     * Constructor, builds all levels
+     * @param samples history, must not be modified while envelope is used
+     */
+    public HistoryEnvelope(float[] samples) {
+        extend(samples, samples.length);
+    }
+
+    /**
+     * Updates levels after samples were appended, only the last block of each level and the new ones
+     * are computed, so the work is proportional to appended samples
+     * @param samples history, the same as before up to previous amount of samples, can be a bigger copy,
+     *                must not be modified while envelope is used
+     * @param count amount of valid samples at start of array, not less than before
+     */
+    public void extend(float[] samples, int count) {
+        int firstChanged = sampleCount;     // the first new sample
+        this.samples = samples;
+        this.sampleCount = count;
+        int newLevels = 0;
+        for (long blockSize = BRANCHING; blockSize < count * (long) BRANCHING; blockSize *= BRANCHING) {
+            newLevels++;
+        }
+        if (newLevels > minimums.length) {
+            minimums = Arrays.copyOf(minimums, newLevels);
+            maximums = Arrays.copyOf(maximums, newLevels);
+            sums = Arrays.copyOf(sums, newLevels);
+            blockCounts = Arrays.copyOf(blockCounts, newLevels);
+        }
+        long blockSize = 1;
+        for (int level = 0; level < newLevels; level++) {
+            blockSize *= BRANCHING;
+            int blockCount = (int) ((count - 1) / blockSize + 1);
+            // block containing the first changed child changes, new levels are computed whole
+            int firstBlock = (level < levels) ? firstChanged / BRANCHING : 0;
+            if (minimums[level] == null || minimums[level].length < blockCount) {
+                int capacity = Math.max(blockCount, (minimums[level] == null) ? 0 : 2 * minimums[level].length);
+                minimums[level] = (minimums[level] == null) ? new float[capacity] : Arrays.copyOf(minimums[level], capacity);
+                maximums[level] = (maximums[level] == null) ? new float[capacity] : Arrays.copyOf(maximums[level], capacity);
+                sums[level] = (sums[level] == null) ? new double[capacity] : Arrays.copyOf(sums[level], capacity);
+            }
+            float[] min = minimums[level];
+            float[] max = maximums[level];
+            double[] sum = sums[level];
+            int childCount = (level == 0) ? count : blockCounts[level - 1];
+            for (int block = firstBlock; block < blockCount; block++) {
+                int first = block * BRANCHING;
+                int end = Math.min(first + BRANCHING, childCount);
+                min[block] = Float.POSITIVE_INFINITY;
+                max[block] = Float.NEGATIVE_INFINITY;
+                sum[block] = 0;
+                for (int child = first; child < end; child++) {
+                    if (level == 0) {
+                        min[block] = Math.min(min[block], samples[child]);
+                        max[block] = Math.max(max[block], samples[child]);
+                        sum[block] += samples[child];
+                    } else {
+                        min[block] = Math.min(min[block], minimums[level - 1][child]);
+                        max[block] = Math.max(max[block], maximums[level - 1][child]);
+                        sum[block] += sums[level - 1][child];
+                    }
+                }
+            }
+            blockCounts[level] = blockCount;
+            firstChanged = firstBlock;
+        }
+        levels = newLevels;
+    }
+
+    /**
+     * @return amount of samples in history
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Summarizes range of history in buckets of equal width. Bucket without any sample,
+     * when range is narrower than samples, gets value interpolated at its middle.
+     * @param from position where range starts, from interval [0,1]
+     * @param to position where range ends, from interval [0,1], bigger than from
+     * @param count amount of buckets
+     * @param min receives minimum of each bucket, at least count long
+     * @param max receives maximum of each bucket, at least count long
+     * @param mean receives mean of each bucket, at least count long
+     */
+    public void buckets(float from, float to, int count, float[] min, float[] max, float[] mean) {
+        int last = sampleCount - 1;
+        double start = Math.max(0, Math.min(1, from)) * (double) last;
+        double end = Math.max(0, Math.min(1, to)) * (double) last;
+        double width = (end - start) / count;
+
+        // the coarsest level with at least BRANCHING blocks in bucket
+        int level = 0;
+        long blockSize = 1;
+        while (level < levels && blockSize * BRANCHING * BRANCHING <= width) {
+            blockSize *= BRANCHING;
+            level++;
+        }
+
+        int bucketFirst = (int) Math.ceil(start);
+        for (int bucket = 0; bucket < count; bucket++) {
+            // samples of bucket are [bucketFirst, bucketEnd)
+            int bucketEnd = (bucket == count - 1) ? (int) Math.floor(end) + 1 : (int) Math.ceil(start + (bucket + 1) * width);
+            if (bucketEnd <= bucketFirst) {
+                float value = interpolate(start + (bucket + 0.5) * width);
+                min[bucket] = value;
+                max[bucket] = value;
+                mean[bucket] = value;
+                continue;
+            }
+            int firstBlock = (int) (bucketFirst / blockSize);
+            int endBlock = (bucket == count - 1) ? (int) ((bucketEnd - 1) / blockSize) + 1 : (int) (bucketEnd / blockSize);
+            summarize(level, blockSize, firstBlock, endBlock, bucket, min, max, mean);
+            bucketFirst = bucketEnd;
+        }
+    }
+
+    /**
+     * Summarizes blocks of level into bucket
+     * @param level level of blocks, 0 for samples
+     * @param blockSize amount of samples in one block
+     * @param firstBlock first block
+     * @param endBlock block after the last one
+     * @param bucket index of bucket in output arrays
+     */
+    private void summarize(int level, long blockSize, int firstBlock, int endBlock, int bucket,
+                           float[] min, float[] max, float[] mean) {
+        float bucketMin = Float.POSITIVE_INFINITY;
+        float bucketMax = Float.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int block = firstBlock; block < endBlock; block++) {
+            if (level == 0) {
+                bucketMin = Math.min(bucketMin, samples[block]);
+                bucketMax = Math.max(bucketMax, samples[block]);
+                sum += samples[block];
+            } else {
+                bucketMin = Math.min(bucketMin, minimums[level - 1][block]);
+                bucketMax = Math.max(bucketMax, maximums[level - 1][block]);
+                sum += sums[level - 1][block];
+            }
+        }
+        long bucketSamples = Math.min(endBlock * blockSize, sampleCount) - firstBlock * blockSize;
+        min[bucket] = bucketMin;
+        max[bucket] = bucketMax;
+        mean[bucket] = (float) (sum / bucketSamples);
+    }
+
+    /**
+     * @param index position in samples with decimal part
+     * @return value linearly interpolated between samples
+     */
+    private float interpolate(double index) {
+        int before = (int) Math.max(0, Math.min(index, sampleCount - 1));
+        int after = Math.min(before + 1, sampleCount - 1);
+        float fraction = (float) (index - before);
+        return samples[before] + (samples[after] - samples[before]) * fraction;
+    }
+
+    /**
+     * @return size of all levels in bytes, without samples
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for (int level = 0; level < levels; level++) {
+            size += (4 + 4 + 8) * (long) sums[level].length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,211 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * History of trajectory, which is loaded on first access
+ *
+ * Source is loaded at most once, by the first thread asking for values, other threads
+ * wait for it. History created from values is loaded already.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class LazyHistory {
+
+    /**
+     * Loads values of history
+     */
+    public interface Source {
+        /**
+         * @return values spread equally across trajectory, null or empty if history is missing
+         */
+        float[] load();
+    }
+
+    /** Source of values, null after loading */
+    private Source source;
+
+    private volatile boolean loaded;
+
+    /** Loaded values, null if history is missing, only the first count are valid, array has room for appended values */
+    private float[] values;
+
+    /** Amount of valid values, written after values, so that it never exceeds values read after it */
+    private volatile int count;
+
+    /** Copy of valid values, if values have room for more, null until it is asked for */
+    private float[] trimmed;
+
+    /** Summary of values, null if history is missing */
+    private HistoryEnvelope envelope;
+
+    /** Actions waiting for loading, null after loading */
+    private List<Runnable> loadActions = new ArrayList<>();
+
+    /**
+     * Constructor
+     * @param source loads values on first access
+     */
+    public LazyHistory(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @param values loaded values, at least one
+     * @return loaded history
+     */
+    public static LazyHistory of(float[] values) {
+        LazyHistory history = new LazyHistory(null);
+        history.setValues(values);
+        history.loadActions = null;
+        history.loaded = true;
+        return history;
+    }
+
+    /**
+     * Returns values, loads them if it is the first access
+     * @return values or null if history is missing, must not be modified
+     */
+    public synchronized float[] get() {
+        if (!loaded) {
+            load();
+        }
+        if (values == null || values.length == count) {
+            return values;
+        }
+        if (trimmed == null) {
+            trimmed = Arrays.copyOf(values, count);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Returns values without copying, loads them if it is the first access,
+     * {@link #size()} has to be read before, the array has at least so many valid values
+     * @return values or null if history is missing, only the first {@link #size()} are valid, must not be modified
+     */
+    public float[] getValues() {
+        if (!loaded) {
+            load();
+        }
+        return values;
+    }
+
+    /**
+     * Returns amount of values, loads them if it is the first access
+     * @return amount of values, 0 if history is missing
+     */
+    public int size() {
+        if (!loaded) {
+            load();
+        }
+        return count;
+    }
+
+    /**
+     * Appends values to the end of history, loads it if it was not loaded,
+     * array grows by doubling and only the end of summary is computed again
+     * @param appended new values
+     * @return false if history is missing, so nothing was appended
+     */
+    public synchronized boolean append(float[] appended) {
+        if (!loaded) {
+            load();
+        }
+        if (values == null) {
+            return false;
+        }
+        int newCount = count + appended.length;
+        if (values.length < newCount) {
+            values = Arrays.copyOf(values, Math.max(newCount, 2 * values.length));
+        }
+        System.arraycopy(appended, 0, values, count, appended.length);
+        envelope.extend(values, newCount);
+        trimmed = null;
+        count = newCount;
+        return true;
+    }
+
+    /**
+     * Returns summary of values, loads them if it is the first access
+     * @return envelope or null if history is missing
+     */
+    public HistoryEnvelope getEnvelope() {
+        if (!loaded) {
+            load();
+        }
+        return envelope;
+    }
+
+    /**
+     * @return true if values are loaded and access does not wait
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Runs action once values are loaded, by the thread which loaded them, or at once if they are loaded already.
+     * It does not cause loading.
+     * @param action the action, it should be short
+     */
+    public void whenLoaded(Runnable action) {
+        synchronized (this) {
+            if (!loaded) {
+                loadActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        try {
+            float[] loadedValues = source.load();
+            if (loadedValues != null && loadedValues.length > 0) {
+                setValues(loadedValues);
+            }
+        } finally {
+            source = null;
+            loaded = true;     // failed source is not loaded again, its history is missing
+            runLoadActions();
+        }
+    }
+
+    /**
+     * Runs actions waiting for loading, also after failed loading, so that no waiter is left behind
+     */
+    private void runLoadActions() {
+        List<Runnable> actions = loadActions;
+        loadActions = null;
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    private void setValues(float[] values) {
+        this.values = values;
+        this.envelope = new HistoryEnvelope(values);
+        this.count = values.length;
+    }
+
+    /**
+     * @return size of loaded values and their summary in bytes
+     */
+    public long getMemorySize() {
+        if (!loaded || values == null) {
+            return 0;
+        }
+        long size = 4L * values.length + envelope.getMemorySize();
+        if (trimmed != null) {
+            size += 4L * trimmed.length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,96 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.Arrays;
+
+/**
+ * Decimates polyline by Douglas-Peucker algorithm
+ *
+ * Vertex is removed if it is closer than tolerance to the line which replaces it.
+ * Stack of ranges is used instead of recursion, so long straight parts do not overflow.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+class LineDecimator {
+
+    private LineDecimator() {
+    }
+
+    /**
+     * Decimates one range of polyline, its first and last vertex are always kept. Ranges are
+     * independent of each other, so they can be decimated in parallel or again after change.
+     * @param vertices packed x,y,z triplets
+     * @param start index of the first vertex of range
+     * @param end index of the last vertex of range
+     * @param tolerance biggest allowed distance of removed vertex from line, same units as vertices
+     * @return indices of kept vertices in ascending order, without the last vertex of range
+     */
+    static int[] decimateRange(float[] vertices, int start, int end, float tolerance) {
+        boolean[] kept = new boolean[end - start];
+        int[] stack = new int[64];
+        float tolerance2 = tolerance * tolerance;
+        kept[0] = true;
+        int top = 0;
+        stack[top++] = start;
+        stack[top++] = end;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            float farthestDistance2 = tolerance2;
+            for (int i = first + 1; i < last; i++) {
+                float distance2 = segmentDistance2(vertices, i, first, last);
+                if (distance2 > farthestDistance2) {
+                    farthest = i;
+                    farthestDistance2 = distance2;
+                }
+            }
+            if (farthest >= 0) {
+                kept[farthest - start] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        int keptCount = 0;
+        for (boolean k : kept) {
+            if (k) keptCount++;
+        }
+        int[] indices = new int[keptCount];
+        for (int i = 0, j = 0; i < kept.length; i++) {
+            if (kept[i]) indices[j++] = start + i;
+        }
+        return indices;
+    }
+
+    /**
+     * Squared distance of vertex from line segment between two other vertices
+     * @param vertices packed x,y,z triplets
+     * @param point index of measured vertex
+     * @param first index of segment start
+     * @param last index of segment end
+     * @return squared distance
+     */
+    private static float segmentDistance2(float[] vertices, int point, int first, int last) {
+        int p = point * Trajectory3D.VERTEX_SIZE;
+        int a = first * Trajectory3D.VERTEX_SIZE;
+        int b = last * Trajectory3D.VERTEX_SIZE;
+        float abx = vertices[b] - vertices[a];
+        float aby = vertices[b + 1] - vertices[a + 1];
+        float abz = vertices[b + 2] - vertices[a + 2];
+        float apx = vertices[p] - vertices[a];
+        float apy = vertices[p + 1] - vertices[a + 1];
+        float apz = vertices[p + 2] - vertices[a + 2];
+        float length2 = abx * abx + aby * aby + abz * abz;
+        float t = (length2 > 0) ? (apx * abx + apy * aby + apz * abz) / length2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        float dx = apx - abx * t;
+        float dy = apy - aby * t;
+        float dz = apz - abz * t;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,190 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+/**
+ * Minimum, maximum, mean and root mean square of any range of values in constant time
+ *
+ * Values are split into blocks of BLOCK_SIZE values. Sums of blocks are kept as prefix sums,
+ * extremes of blocks in sparse table, where level k holds extremes of 2^k blocks starting
+ * at each block, so any run of whole blocks is covered by two overlapping entries.
+ * Query reads at most two entries of each table and scans values of partial blocks
+ * at both ends of range, which is at most 2 * BLOCK_SIZE values regardless of amount of values.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class RangeSummary {
+
+    /** Amount of values in one block, power of two */
+    private static final int BLOCK_SIZE = 32;
+    private static final int BLOCK_SHIFT = Integer.numberOfTrailingZeros(BLOCK_SIZE);
+
+    /** Summarized values, not copied */
+    private final float[] values;
+
+    /** Sum of values and sum of squares of values of blocks before block i at index i */
+    private final double[] blockSums;
+    private final double[] blockSquares;
+
+    /** Minimum and maximum of 2^k blocks starting at block i at [k][i] */
+    private final float[][] blockMins;
+    private final float[][] blockMaxs;
+
+    /**
+     * Constructor, summarizes values
+     * @param values the values, must not be modified while summary is used
+     */
+    public RangeSummary(float[] values) {
+        this.values = values;
+        int blockCount = (values.length + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        blockSums = new double[blockCount + 1];
+        blockSquares = new double[blockCount + 1];
+        int levels = (blockCount == 0) ? 0 : 32 - Integer.numberOfLeadingZeros(blockCount);
+        blockMins = new float[levels][];
+        blockMaxs = new float[levels][];
+        if (levels == 0) {
+            return;
+        }
+        blockMins[0] = new float[blockCount];
+        blockMaxs[0] = new float[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int from = block << BLOCK_SHIFT;
+            int to = Math.min(from + BLOCK_SIZE, values.length);
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            double sum = 0;
+            double squares = 0;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+                sum += values[i];
+                squares += values[i] * (double) values[i];
+            }
+            blockMins[0][block] = min;
+            blockMaxs[0][block] = max;
+            blockSums[block + 1] = blockSums[block] + sum;
+            blockSquares[block + 1] = blockSquares[block] + squares;
+        }
+        for (int level = 1; level < levels; level++) {
+            int half = 1 << (level - 1);
+            int count = blockCount - (1 << level) + 1;
+            float[] lowerMins = blockMins[level - 1];
+            float[] lowerMaxs = blockMaxs[level - 1];
+            blockMins[level] = new float[count];
+            blockMaxs[level] = new float[count];
+            for (int block = 0; block < count; block++) {
+                blockMins[level][block] = Math.min(lowerMins[block], lowerMins[block + half]);
+                blockMaxs[level][block] = Math.max(lowerMaxs[block], lowerMaxs[block + half]);
+            }
+        }
+    }
+
+    /**
+     * @return amount of summarized values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return the smallest value of range, NaN for empty range
+     */
+    public float min(int from, int to) {
+        return extreme(from, to, false);
+    }
+
+    /**
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return the biggest value of range, NaN for empty range
+     */
+    public float max(int from, int to) {
+        return extreme(from, to, true);
+    }
+
+    /**
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return arithmetic mean of range, NaN for empty range
+     */
+    public float mean(int from, int to) {
+        return (from < to) ? (float) (sum(from, to, false) / (to - from)) : Float.NaN;
+    }
+
+    /**
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return root mean square of range, NaN for empty range
+     */
+    public float rms(int from, int to) {
+        return (from < to) ? (float) Math.sqrt(sum(from, to, true) / (to - from)) : Float.NaN;
+    }
+
+    /**
+     * @param from index of the first value, at least 0
+     * @param to index after the last value, at most size
+     * @param max true for maximum, false for minimum
+     * @return the extreme, NaN for empty range
+     */
+    private float extreme(int from, int to, boolean max) {
+        if (from >= to) {
+            return Float.NaN;
+        }
+        int firstBlock = (from + BLOCK_SIZE - 1) >> BLOCK_SHIFT;   // the first whole block
+        int endBlock = to >> BLOCK_SHIFT;                           // block after the last whole one
+        if (firstBlock >= endBlock) {
+            return scanExtreme(from, to, max, max ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY);
+        }
+        int level = 31 - Integer.numberOfLeadingZeros(endBlock - firstBlock);
+        float[][] table = max ? blockMaxs : blockMins;
+        float a = table[level][firstBlock];
+        float b = table[level][endBlock - (1 << level)];
+        float result = max ? Math.max(a, b) : Math.min(a, b);
+        result = scanExtreme(from, firstBlock << BLOCK_SHIFT, max, result);
+        return scanExtreme(endBlock << BLOCK_SHIFT, to, max, result);
+    }
+
+    private float scanExtreme(int from, int to, boolean max, float result) {
+        for (int i = from; i < to; i++) {
+            result = max ? Math.max(result, values[i]) : Math.min(result, values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param from index of the first value, at least 0
+     * @param to index after the last value, at most size
+     * @param squares true for sum of squares of values
+     * @return sum of range
+     */
+    private double sum(int from, int to, boolean squares) {
+        int firstBlock = (from + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        int endBlock = to >> BLOCK_SHIFT;
+        if (firstBlock >= endBlock) {
+            return scanSum(from, to, squares);
+        }
+        double[] prefix = squares ? blockSquares : blockSums;
+        return prefix[endBlock] - prefix[firstBlock]
+                + scanSum(from, firstBlock << BLOCK_SHIFT, squares) + scanSum(endBlock << BLOCK_SHIFT, to, squares);
+    }
+
+    private double scanSum(int from, int to, boolean squares) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += squares ? values[i] * (double) values[i] : values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return size of summary in bytes, without summarized values
+     */
+    public long getMemorySize() {
+        long size = 8L * (blockSums.length + blockSquares.length);
+        for (int level = 0; level < blockMins.length; level++) {
+            size += 4L * (blockMins[level].length + blockMaxs[level].length);
+        }
+        return size;
+    }
+}
@@ -20,6 +20,13 @@ public class Simulation {
     private float currentPosition;
     private float previousPosition;
 
+    /** Vertices at previous and current position, reused every frame */
+    private final Vector3 previousVertex = new Vector3();
+    private final Vector3 currentVertex = new Vector3();
+
+    /** Elapsed time at current position, kept apart from position to advance precisely by small steps */
+    private double currentTime;
+
     private boolean running = false;
     private float simSpeed = 1.0f;
     private boolean backwards = false;
@@ -36,7 +43,10 @@ public class Simulation {
         this.visualizationScreen = simScreen;
     }
 
-    public void setTrajectory(Trajectory3D trajectory) { this.trajectory = trajectory; }
+    public void setTrajectory(Trajectory3D trajectory) {
+        this.trajectory = trajectory;
+        currentTime = (trajectory != null) ? trajectory.elapsedTimeAt(currentPosition) : 0;
+    }
 
     /**
      * Set current ship position, will update previous position
@@ -51,32 +61,70 @@ public class Simulation {
         } else {
             currentPosition = value;
         }
+        if (trajectory != null) {
+            currentTime = trajectory.elapsedTimeAt(currentPosition);
+        }
         if (currentPosition == POS_MIN || currentPosition == POS_MAX) {
             stop();
         }
         if (visualizationScreen != null) {
             if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
-            visualizationScreen.updateScene(trajectory.vertexAt(previousPosition), trajectory.vertexAt(currentPosition));
-            visualizationScreen.updateShipPitch(trajectory.pitchAt(previousPosition), trajectory.pitchAt(currentPosition));
+            visualizationScreen.updateScene(trajectory.vertexAt(previousPosition, previousVertex), trajectory.vertexAt(currentPosition, currentVertex),
+                    trajectory.centralAngleAt(previousPosition), trajectory.centralAngleAt(currentPosition));
+            visualizationScreen.updateShipPitch(getShipPitch());
         }
     }
 
     /**
-     * Change current ship position by delta
+     * Change current ship position by real time delta, can pass several trajectory sections at once
+     * @param delta real time since last update in seconds
      */
     public void updateShipPosition(float delta) {
         if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
-        delta = delta * simSpeed * trajectory.speedAt(currentPosition);
+        double timeDelta = delta * simSpeed;
         if (backwards) {
-            delta = -delta;
+            timeDelta = -timeDelta;
+        }
+        setElapsedTime(currentTime + timeDelta);
+    }
+
+    /**
+     * Moves ship to position reached at given elapsed time, will update previous position
+     * @param time elapsed time in seconds, same scale as trajectory times
+     */
+    public void setElapsedTime(double time) {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        setShipPosition(trajectory.positionAtTime((float) time));
+        if (currentPosition != POS_MIN && currentPosition != POS_MAX) {
+            currentTime = time;
         }
+    }
 
-        if (currentPosition + delta > POS_MAX) {
-            setShipPosition(POS_MAX);
-        } else if (currentPosition + delta < POS_MIN) {
-            setShipPosition(POS_MIN);
+    /**
+     * Appends samples to trajectory, ship stays at the same elapsed time,
+     * or at the end of trajectory if it was there
+     * @param samples new samples
+     */
+    public void append(TrajectorySamples samples) {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        Vector3 vertexBefore = trajectory.vertexAt(currentPosition);
+        float angleBefore = trajectory.centralAngleAt(currentPosition);
+        int sectionsBefore = trajectory.getTimeCount() - 1;
+
+        trajectory.append(samples);
+
+        if (currentPosition != POS_MAX) {
+            float scale = sectionsBefore / (float) (trajectory.getTimeCount() - 1);
+            currentPosition *= scale;
+            previousPosition *= scale;
         } else {
-            setShipPosition(currentPosition + delta);
+            currentTime = trajectory.elapsedTimeAt(currentPosition);
+        }
+        if (visualizationScreen != null) {
+            visualizationScreen.rebuildTrajectory();
+            visualizationScreen.updateScene(vertexBefore, trajectory.vertexAt(currentPosition),
+                    angleBefore, trajectory.centralAngleAt(currentPosition));
+            visualizationScreen.updateShipPitch(getShipPitch());
         }
     }
 
@@ -153,14 +201,12 @@ public class Simulation {
     }
 
     /**
-     * Computes current altitude from x and y coordinates
+     * Returns current altitude computed from x and y coordinates
      * @return altitude above Moon's surface in meters
      */
     public float getAltitude() {
-        if (visualizationScreen == null) throw new GdxRuntimeException("Screen not set.");
         if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
-        Vector3 pos = trajectory.vertexAt(currentPosition);
-        return (((float) Math.sqrt(pos.x * pos.x + pos.y * pos.y)) - Constants.MOON_RADIUS * visualizationScreen.SCENE_SCALE)/ visualizationScreen.SCENE_SCALE;
+        return trajectory.altitudeAt(currentPosition);
     }
 
     /**
@@ -172,6 +218,15 @@ public class Simulation {
         return trajectory.downrangeDistFromTargetAt(currentPosition);
     }
 
+    /**
+     * Computes distance flown along trajectory from its start
+     * @return flown distance in meters
+     */
+    public float getFlownDistance() {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        return trajectory.distanceAt(currentPosition);
+    }
+
     /**
      * Computes current pitch
      * @return pitch in degrees relative to tangent
@@ -181,13 +236,63 @@ public class Simulation {
         return (180f/(float) Math.PI) * trajectory.pitchAt(currentPosition);
     }
 
+    /**
+     * Pitch of ship model, which does not wait for pitch history still loading
+     * @return pitch in radians, 0 while pitch history is loading
+     */
+    public float getShipPitch() {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        return isPitchLoaded() ? trajectory.pitchAt(currentPosition) : 0;
+    }
+
+    /**
+     * @return true if pitch can be accessed without waiting for its loading
+     */
+    public boolean isPitchLoaded() {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        return trajectory.isHistoryLoaded(Trajectory3D.CHANNEL_PITCH);
+    }
+
     /**
      * Returns elapsed time since trajectory beginning at current position
      * @return elapsed time as Duration
      */
     public Duration getElapsedTime() {
+        return Duration.ofMillis((long) getElapsedSeconds() * 1000);
+    }
+
+    /**
+     * Returns elapsed time since trajectory beginning at current position
+     * @return elapsed time in seconds
+     */
+    public float getElapsedSeconds() {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        return trajectory.elapsedTimeAt(currentPosition);
+    }
+
+    /**
+     * @return histories of trajectory by channel name
+     */
+    public HistoryChannels getHistoryChannels() {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        return trajectory.getChannels();
+    }
+
+    /**
+     * Samples all histories at current simulation state at once
+     * @param out receives value of each channel of {@link #getHistoryChannels()} at its index
+     */
+    public void sampleHistories(float[] out) {
+        if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
+        trajectory.sampleAll(currentPosition, out);
+    }
+
+    /**
+     * @return true if histories can be accessed without waiting for their loading
+     */
+    public boolean areHistoriesLoaded() {
         if (trajectory == null) throw new GdxRuntimeException("Trajectory not loaded.");
-        return Duration.ofMillis((long) trajectory.elapsedTimeAt(currentPosition) * 1000);
+        return trajectory.areHistoriesLoaded();
     }
 
     /**
@@ -0,0 +1,101 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.Locale;
+
+/**
+ * Parameters of trajectory smoothing
+ *
+ * Fixed smoothing inserts the same amount of vertices between every two control vertices.
+ * Adaptive smoothing inserts only as many vertices as needed to keep the smooth line within
+ * chordal tolerance from Bezier curve, optionally limited by total amount of vertices.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class Smoothing {
+
+    /** Default chordal tolerance of adaptive smoothing in meters */
+    public static final float DEFAULT_TOLERANCE = 50f;
+
+    /** Default maximum of vertices inserted between two control vertices by adaptive smoothing */
+    public static final int DEFAULT_MAX_POINTS = 32;
+
+    private final boolean adaptive;
+
+    /** amount of new vertices between each two control vertices, maximum for adaptive smoothing */
+    private final int smoothFactor;
+
+    /** biggest allowed distance between smooth line and curve (meters) */
+    private final float tolerance;
+
+    /** maximum of smooth vertices, 0 for unlimited */
+    private final int vertexBudget;
+
+    private Smoothing(boolean adaptive, int smoothFactor, float tolerance, int vertexBudget) {
+        this.adaptive = adaptive;
+        this.smoothFactor = smoothFactor;
+        this.tolerance = tolerance;
+        this.vertexBudget = vertexBudget;
+    }
+
+    /**
+     * @param smoothFactor amount of new vertices between each two control vertices
+     * @return fixed smoothing
+     */
+    public static Smoothing fixed(int smoothFactor) {
+        return new Smoothing(false, smoothFactor, 0, 0);
+    }
+
+    /**
+     * @param tolerance biggest allowed distance between smooth line and curve in meters
+     * @param maxPoints maximum of new vertices between two control vertices
+     * @param vertexBudget maximum of all smooth vertices, tolerance is raised to meet it, 0 for unlimited
+     * @return adaptive smoothing
+     */
+    public static Smoothing adaptive(float tolerance, int maxPoints, int vertexBudget) {
+        return new Smoothing(true, maxPoints, tolerance, vertexBudget);
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * @return amount of new vertices between each two control vertices, maximum if smoothing is adaptive
+     */
+    public int getSmoothFactor() {
+        return smoothFactor;
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    public int getVertexBudget() {
+        return vertexBudget;
+    }
+
+    /**
+     * @return text which identifies parameters, used in cache keys
+     */
+    public String getKey() {
+        return adaptive
+                ? String.format(Locale.ROOT, "adaptive:%s:%d:%d", Float.toString(tolerance), smoothFactor, vertexBudget)
+                : "fixed:" + smoothFactor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Smoothing && ((Smoothing) o).getKey().equals(getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return getKey().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
@@ -0,0 +1,16 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps the one pool of threads running parallel tasks of loading, smoothing and comparing,
+ * so they do not compete with threads of their own pools
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TaskPool {
+
+    /** The shared pool, one thread for each processor, its workers are daemon threads */
+    public static final ForkJoinPool POOL = new ForkJoinPool();
+}
@@ -3,19 +3,22 @@ package cz.vutbr.fit.xkarpi06.bt.model;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.VertexAttribute;
 import com.badlogic.gdx.graphics.g3d.Material;
 import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
 import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
 import com.badlogic.gdx.math.Bezier;
 import com.badlogic.gdx.math.CatmullRomSpline;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.Ray;
+import com.badlogic.gdx.utils.IntArray;
 
 import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
 
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,111 +36,645 @@ public class Trajectory3D {
     /** Trajectory model */
     public Model model;
 
-    /** vertices defining the trajectory */
-    private Vector3[] smoothVertices;   // (cartesian)
+    /** true if model was built with colours of vertices */
+    private boolean modelColored;
 
-    /** vertices obtained as input in constructor */
-    private Vector3[] controlVertices;  // (cartesian)
+    /** packed colour of each smooth vertex in model, null for uniform colour of model */
+    private float[] vertexColors;
 
-    /** 'checkpoints' spread equally across trajectory, including start and finish */
-    private float[] times;      // (seconds)
+    /** Amount of floats per vertex in vertex arrays, x,y,z */
+    public static final int VERTEX_SIZE = 3;
+
+    /** vertices defining the trajectory, packed x,y,z triplets, only the first smoothCount are valid */
+    private float[] smoothVertices;   // (cartesian)
+    private int smoothCount;
+
+    /** vertices obtained as input in constructor, packed x,y,z triplets, only the first controlCount are valid */
+    private float[] controlVertices;  // (cartesian)
+    private int controlCount;
+
+    /** length of trajectory from start to each smooth vertex, same units as vertices */
+    private double[] arcLengths;
+
+    /** parameters of smoothing, which created smooth vertices */
+    private Smoothing smoothing;
+
+    /** index of smooth vertex at each control vertex, null for fixed smoothing */
+    private int[] sectionStarts;
+
+    /** Amount of vertices in one range decimated at once, it limits work of decimation. Neighbouring ranges share one vertex. */
+    private static final int DECIMATION_RANGE_VERTICES = Short.MAX_VALUE;
+
+    /** Most sections between control vertices smoothed by one task */
+    private static final int SMOOTHING_TASK_SECTIONS = 8192;
 
-    /** speed at each section between two checkpoints */
-    private float[] speeds;
+    /** Appending smooths whole trajectory again once it exceeds vertex budget by 1/BUDGET_OVERSHOOT of smooth vertices */
+    private static final int BUDGET_OVERSHOOT = 8;
 
-    /** pitch in (radians) state-points spread equally across trajectory, including start and finish*/
-    private float[] pitchHistory;    // (radians)
+    /** Chordal tolerances of decimated levels of detail 1, 2, ..., same units as vertices, level 0 is full resolution */
+    public static final float[] LOD_TOLERANCES = { 0.005f, 0.05f, 0.5f, 5f };
 
-    /** mass in (kg) state-points spread equally across trajectory, including start and finish*/
-    private float[] massHistory;    // (kilograms)
+    /** indices of smooth vertices kept in each level of detail, null for level 0 */
+    private int[][] levelVertices;
+
+    /** amount of valid indices of each level of detail */
+    private int[] levelCounts;
+
+    /** altitude above Moon's surface computed from x and y coordinates at each smooth vertex (meters) */
+    private float[] altitudes;
+
+    /** central angle theta in x-y plane at each smooth vertex (radians), from interval [0,2pi) */
+    private float[] centralAngles;
+
+    /** central angle theta of target, the last control vertex (radians) */
+    private float targetCentralAngle;
+
+    /** spatial index over lines between smooth vertices */
+    private TrajectoryIndex spatialIndex;
+
+    /** 'checkpoints' spread equally across trajectory, including start and finish, non-decreasing,
+     *  only the first timeCount are valid */
+    private float[] times;      // (seconds)
+    private int timeCount;
 
-    /** vertical velocity in (m/s) state-points spread equally across trajectory, including start and finish*/
-    private float[] vrHistory;    // (m/s)
+    /** Names of channels of known histories */
+    public static final String CHANNEL_PITCH = "pitch";    // (radians)
+    public static final String CHANNEL_MASS = "mass";      // (kilograms)
+    public static final String CHANNEL_VR = "vr";          // vertical velocity (m/s)
+    public static final String CHANNEL_VTH = "vth";        // horizontal velocity (m/s)
 
-    /** horizontal velocity in (m/s) state-points spread equally across trajectory, including start and finish*/
-    private float[] vthHistory;    // (m/s)
+    /** state-points of histories spread equally across trajectory, including start and finish, by channel name */
+    private final HistoryChannels channels = new HistoryChannels();
 
-    private static final float SCALE = 0.001f;
+    /** Units of vertices per meter */
+    static final float SCALE = 0.001f;
 
     /**
      * Constructor
-     * @param controlVertices original vertices for trajectory in cartesian form
+     * @param controlVertices original vertices for trajectory in cartesian form, packed x,y,z triplets
      * @param times times at which the spacecraft arrives to each vertex, if the amount differs from
      *              amount of vertices, the time-points will be evenly spread among trajectory.
      *              Time equal to 1 and constant speed will be set if null.
-     * @param smoothFactor amount of new vertices between each two vertices when smoothing with spline
+     * @param smoothing how new vertices are added between each two vertices when smoothing with spline
      */
-    private Trajectory3D(Vector3[] controlVertices, float[] times, int smoothFactor) {
+    private Trajectory3D(float[] controlVertices, float[] times, Smoothing smoothing) {
 //        for (int i = 1; i < controlVertices.length; i++) {
 //            System.out.println(i + " Delta: " + controlVertices[i-1].dst(controlVertices[i]));
 //        }
 
         this.controlVertices = controlVertices;
+        this.controlCount = controlVertices.length / VERTEX_SIZE;
         scale(this.controlVertices, SCALE);
 
-        createSmoothVertices(this.controlVertices,smoothFactor);
+        this.smoothing = smoothing;
+        createSmoothVertices(0);
         this.times = times;
-        computeSpeed();
+        this.timeCount = times.length;
     }
 
     /**
      * Static creator, checks if vertices and times were passed
-     * @param controlVertices input vertices
+     * @param controlVertices input vertices, packed x,y,z triplets
      * @param times input times
      * @param smoothFactor smoothfactor
      * @return Trajectory3D if success, null if some input is missing or invalid
      */
-    public static Trajectory3D create(Vector3[] controlVertices, float[] times, int smoothFactor) {
-        if (controlVertices == null || controlVertices.length < 2) {
+    public static Trajectory3D create(float[] controlVertices, float[] times, int smoothFactor) {
+        return create(controlVertices, times, Smoothing.fixed(smoothFactor));
+    }
+
+    /**
+     * Static creator, checks if vertices and times were passed
+     * @param controlVertices input vertices, packed x,y,z triplets
+     * @param times input times
+     * @param smoothing smoothing parameters
+     * @return Trajectory3D if success, null if some input is missing or invalid
+     */
+    public static Trajectory3D create(float[] controlVertices, float[] times, Smoothing smoothing) {
+        if (controlVertices == null || controlVertices.length < 2 * VERTEX_SIZE) {
             LOGGER.log(Level.FINE, "Trajectory NOT CREATED. Not enough vertices, less than 2.");
             return null;
         } else if (times == null || times.length < 2) {
             LOGGER.log(Level.FINE, "Trajectory NOT CREATED. Not enough discrete times, less than 2.");
             return null;
         }
-        return new Trajectory3D(controlVertices, times, smoothFactor);
+        return new Trajectory3D(controlVertices, times, smoothing);
     }
 
     /**
-     * Creates polished trajectory using {@link Bezier}
-     * @param input vertex array
-     * @param smoothness amount of new vertices between each two input vertices
+     * Constructor for trajectory which was already created once, smoothing is not repeated.
+     * Tables derived from smooth vertices, levels of detail and spatial index are computed again,
+     * long trajectories in parallel.
+     * @param controlVertices scaled control vertices
+     * @param smoothVertices smooth vertices created from control vertices
+     * @param sectionStarts index of smooth vertex at each control vertex, null for fixed smoothing
+     * @param times input times
+     * @param smoothing smoothing which created smooth vertices
      */
-    private void createSmoothVertices(Vector3[] input, int smoothness) {
-        int k = input.length + (input.length - 1)*smoothness;
-        smoothVertices = new Vector3[k];
+    private Trajectory3D(float[] controlVertices, float[] smoothVertices, int[] sectionStarts, float[] times, Smoothing smoothing) {
+        this.controlVertices = controlVertices;
+        this.controlCount = controlVertices.length / VERTEX_SIZE;
+        this.smoothVertices = smoothVertices;
+        this.smoothCount = smoothVertices.length / VERTEX_SIZE;
+        this.sectionStarts = sectionStarts;
+        this.smoothing = smoothing;
+        computeArcLengths(0);
+        computeLevelsOfDetail(0);
+        computeDerivedTables(0);
+        spatialIndex = new TrajectoryIndex(smoothVertices, smoothCount);
+        this.times = times;
+        this.timeCount = times.length;
+    }
+
+    /**
+     * Static creator for trajectory restored from cache, see {@link #getControlVertices()},
+     * {@link #getSmoothVertices()} and {@link #getSectionPoints()}
+     * @param controlVertices scaled control vertices
+     * @param smoothVertices smooth vertices
+     * @param sectionPoints amount of smooth vertices of each section between two control vertices,
+     *                      needed for adaptive smoothing only
+     * @param times input times
+     * @param smoothing smoothing which created smooth vertices
+     * @return Trajectory3D if success, null if some input is missing or invalid
+     */
+    public static Trajectory3D restore(float[] controlVertices, float[] smoothVertices, float[] sectionPoints,
+                                       float[] times, Smoothing smoothing) {
+        if (controlVertices == null || controlVertices.length < 2 * VERTEX_SIZE
+                || smoothVertices == null || smoothVertices.length < controlVertices.length) {
+            LOGGER.log(Level.FINE, "Trajectory NOT RESTORED. Not enough vertices.");
+            return null;
+        } else if (times == null || times.length < 2) {
+            LOGGER.log(Level.FINE, "Trajectory NOT RESTORED. Not enough discrete times, less than 2.");
+            return null;
+        }
+        int controlCount = controlVertices.length / VERTEX_SIZE;
+        int smoothCount = smoothVertices.length / VERTEX_SIZE;
+        int[] sectionStarts = null;
+        if (smoothing.isAdaptive()) {
+            if (sectionPoints == null || sectionPoints.length != controlCount - 1) {
+                LOGGER.log(Level.FINE, "Trajectory NOT RESTORED. Sections do not match vertices.");
+                return null;
+            }
+            sectionStarts = new int[controlCount];
+            for (int i = 0; i < sectionPoints.length; i++) {
+                sectionStarts[i + 1] = sectionStarts[i] + (int) sectionPoints[i];
+            }
+        }
+        int expectedCount = (sectionStarts == null)
+                ? controlCount + (controlCount - 1) * smoothing.getSmoothFactor()
+                : sectionStarts[controlCount - 1] + 1;
+        if (smoothCount != expectedCount) {
+            LOGGER.log(Level.FINE, "Trajectory NOT RESTORED. Smooth vertices do not match smoothing.");
+            return null;
+        }
+        return new Trajectory3D(controlVertices, smoothVertices, sectionStarts, times, smoothing);
+    }
+
+    /**
+     * Creates polished trajectory from control vertices using {@link Bezier} curves
+     * @param firstSegment index of control vertex where recomputing starts, multiple of 3,
+     *                     smooth vertices before it are kept from previous smoothVertices
+     * @return index of the first recomputed smooth vertex
+     */
+    private int createSmoothVertices(int firstSegment) {
+        int inputCount = controlCount;
+        int smoothness = smoothing.getSmoothFactor();
+        int[] starts = smoothing.isAdaptive() ? adaptiveSectionStarts(firstSegment) : null;
+        int k = (starts == null) ? inputCount + (inputCount - 1)*smoothness : starts[inputCount - 1] + 1;
+        int keptVertices = (starts == null) ? firstSegment * (smoothness + 1) : starts[firstSegment];
+        // appended vertices are written after the kept ones, array grows by doubling
+        smoothVertices = (firstSegment > 0) ? ensureCapacity(smoothVertices, k * VERTEX_SIZE) : new float[k * VERTEX_SIZE];
+        smoothCount = k;
+        sectionStarts = starts;
+
+        // sections write to their own part of smoothVertices, long trajectories are smoothed in parallel
+        int lastVertex = inputCount - 1;
+        if (lastVertex - firstSegment > SMOOTHING_TASK_SECTIONS) {
+            TaskPool.POOL.invoke(new SmoothingTask(firstSegment, lastVertex));
+        } else {
+            smoothSections(firstSegment, lastVertex);
+        }
+        System.arraycopy(controlVertices, lastVertex * VERTEX_SIZE, smoothVertices, (smoothCount - 1) * VERTEX_SIZE, VERTEX_SIZE);
+
+        computeArcLengths(keptVertices);
+        computeLevelsOfDetail(keptVertices);
+        computeDerivedTables(keptVertices);
+        if (keptVertices == 0) {
+            spatialIndex = new TrajectoryIndex(smoothVertices, smoothCount);
+        } else {
+            spatialIndex.update(smoothVertices, smoothCount, keptVertices);
+        }
+        return keptVertices;
+    }
+
+    /**
+     * @param array array with valid values at its start
+     * @param length required length
+     * @return the array, or its copy with at least double length, if it is shorter than required
+     */
+    private static float[] ensureCapacity(float[] array, int length) {
+        return (array.length >= length) ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    private static double[] ensureCapacity(double[] array, int length) {
+        return (array.length >= length) ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+        return (array.length >= length) ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    /**
+     * Computes altitude and central angle of smooth vertices, long trajectories are computed in parallel
+     * @param firstVertex index of smooth vertex where computing starts, values before it are kept
+     */
+    private void computeDerivedTables(int firstVertex) {
+        int vertexCount = smoothCount;
+        altitudes = (firstVertex > 0) ? ensureCapacity(altitudes, vertexCount) : new float[vertexCount];
+        centralAngles = (firstVertex > 0) ? ensureCapacity(centralAngles, vertexCount) : new float[vertexCount];
+        if (vertexCount - firstVertex > SMOOTHING_TASK_SECTIONS) {
+            TaskPool.POOL.invoke(new DerivedTablesTask(firstVertex, vertexCount));
+        } else {
+            computeDerivedValues(firstVertex, vertexCount);
+        }
+        int target = (controlCount - 1) * VERTEX_SIZE;
+        targetCentralAngle = centralAngle(controlVertices[target], controlVertices[target + 1]);
+    }
+
+    /**
+     * Computes altitude and central angle of range of smooth vertices
+     * @param from first vertex
+     * @param to vertex after the last one
+     */
+    private void computeDerivedValues(int from, int to) {
+        for (int i = from; i < to; i++) {
+            float x = smoothVertices[i * VERTEX_SIZE];
+            float y = smoothVertices[i * VERTEX_SIZE + 1];
+            altitudes[i] = (float) (Math.sqrt(x * (double) x + y * (double) y) / SCALE - Constants.MOON_RADIUS);
+            centralAngles[i] = centralAngle(x, y);
+        }
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return angle of vector in x-y plane from x axis in radians, from interval [0,2pi)
+     */
+    private static float centralAngle(float x, float y) {
+        float theta = (float) Math.atan2(y, x);
+        if (theta < 0) theta += 2*Math.PI;
+        return theta;
+    }
+
+    /**
+     * Computes derived values of range of smooth vertices, splits it in halves until it is short enough
+     */
+    private class DerivedTablesTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        DerivedTablesTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SMOOTHING_TASK_SECTIONS) {
+                computeDerivedValues(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DerivedTablesTask(from, middle), new DerivedTablesTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     * Computes smooth vertices of sections between input vertices, including the first vertex of each section
+     * Bezier curve starts every three control vertices, the last ones can have less than four vertices.
+     * @param from first section
+     * @param to section after the last one
+     */
+    private void smoothSections(int from, int to) {
+        float[] input = controlVertices;
+        int inputCount = controlCount;
+        int smoothness = smoothing.getSmoothFactor();
+        for (int i = from; i < to; i++) {
+            int bezierStart = i / 3 * 3;
+            int bezierPoints = Math.min(4, inputCount - bezierStart);
+            int sectionStart = (sectionStarts == null) ? i*(smoothness + 1) : sectionStarts[i];
+            int sectionPoints = (sectionStarts == null) ? smoothness + 1 : sectionStarts[i + 1] - sectionStarts[i];
+            for (int j = 0; j < sectionPoints; j++) {
+                int nextSmooth = sectionStart + j;
+                float offsetOfNext = ((i%3)*sectionPoints + j)/(float)((bezierPoints - 1)*sectionPoints);
+                bezierAt(input, bezierStart, bezierPoints, offsetOfNext, smoothVertices, nextSmooth * VERTEX_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Smooths range of sections, splits it in halves until it is short enough
+     */
+    private class SmoothingTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        SmoothingTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SMOOTHING_TASK_SECTIONS) {
+                smoothSections(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SmoothingTask(from, middle), new SmoothingTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     * Chooses amount of smooth vertices for each section between two control vertices, so that
+     * lines between them are within tolerance from Bezier curve. Chordal error falls with
+     * square of amount of lines, which gives the first guess, then the guess is checked.
+     * If vertex budget is set, tolerance is raised until the guesses fit into the budget.
+     * Recomputed sections share the part of budget, which is not taken by kept sections.
+     * @param firstSegment index of control vertex where recomputing starts, sections before it are kept
+     * @return index of smooth vertex at each control vertex, only the first controlCount are valid
+     */
+    private int[] adaptiveSectionStarts(int firstSegment) {
+        float[] input = controlVertices;
+        int inputCount = controlCount;
+        int maxPieces = smoothing.getSmoothFactor() + 1;
+        int budget = smoothing.getVertexBudget();
+        float tolerance = smoothing.getTolerance() * SCALE;
+        float[] points = new float[3 * VERTEX_SIZE];
+
+        int[] starts = (firstSegment > 0) ? ensureCapacity(sectionStarts, inputCount) : new int[inputCount];
+        float[] errors = new float[inputCount - 1 - firstSegment];
+        for (int i = firstSegment; i < inputCount - 1; i++) {
+            errors[i - firstSegment] = sectionError(input, inputCount, i, 1, points);
+        }
+        if (budget > 0) {
+            // vertices inserted into kept sections are taken from budget
+            int keptInserted = starts[firstSegment] - firstSegment;
+            tolerance = budgetTolerance(errors, tolerance, maxPieces, budget - inputCount - keptInserted);
+        }
+        for (int i = firstSegment; i < inputCount - 1; i++) {
+            int pieces = estimatePieces(errors[i - firstSegment], tolerance, maxPieces);
+            while (budget == 0 && pieces < maxPieces && sectionError(input, inputCount, i, pieces, points) > tolerance) {
+                pieces++;
+            }
+            starts[i + 1] = starts[i] + pieces;
+        }
+        return starts;
+    }
+
+    /**
+     * Finds the smallest tolerance, for which estimated amount of inserted vertices fits into budget
+     * @param errors chordal errors of sections without inserted vertices
+     * @param tolerance requested tolerance
+     * @param maxPieces maximum of lines in one section
+     * @param available amount of vertices which can be inserted
+     * @return tolerance, at least the requested one
+     */
+    private static float budgetTolerance(float[] errors, float tolerance, int maxPieces, int available) {
+        if (insertedPoints(errors, tolerance, maxPieces) <= available) {
+            return tolerance;
+        }
+        float high = tolerance;
+        for (float error : errors) {
+            high = Math.max(high, error);
+        }
+        float low = tolerance;
+        for (int i = 0; i < 40; i++) {
+            float middle = (low + high) / 2;
+            if (insertedPoints(errors, middle, maxPieces) <= available) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return high;
+    }
 
-        Bezier<Vector3> bezier = null;
-//        CatmullRomSpline<Vector3> catmull = new CatmullRomSpline<>(extendEnds(input), true);
+    private static long insertedPoints(float[] errors, float tolerance, int maxPieces) {
+        long points = 0;
+        for (float error : errors) {
+            points += estimatePieces(error, tolerance, maxPieces) - 1;
+        }
+        return points;
+    }
 
-        for(int i = 0; i < input.length; i++) {
-            // create new Bezier spline every four vertices
-            if (i%3 == 0 || i == input.length - 1) {
-                if (i+3 < input.length) {
-                    bezier = new Bezier<>(input, i, 4);
+    /**
+     * @param error chordal error of whole section
+     * @param tolerance allowed error
+     * @param maxPieces maximum of lines
+     * @return estimated amount of lines, which approximate section within tolerance
+     */
+    private static int estimatePieces(float error, float tolerance, int maxPieces) {
+        if (error <= tolerance) {
+            return 1;
+        }
+        return (int) Math.min(maxPieces, Math.ceil(Math.sqrt(error / tolerance)));
+    }
 
-                    // these below are only used for last trailing vertices
-                } else if (i+2 < input.length) {
-                    bezier = new Bezier<>(input, i, 3);
-                } else if (i+1 < input.length) {
-                    bezier = new Bezier<>(input, i, 2);
-                } else { // very last index
-                    smoothVertices[smoothVertices.length-1] = input[input.length-1];
-                    break;
+    /**
+     * Measures the biggest distance between Bezier curve and lines approximating one section,
+     * the curve is compared with the lines in quarters of each line
+     * @param input packed vertices
+     * @param inputCount amount of valid input vertices
+     * @param section index of input vertex where section starts
+     * @param pieces amount of lines in section
+     * @param points temporary array for three vertices
+     * @return chordal error
+     */
+    private static float sectionError(float[] input, int inputCount, int section, int pieces, float[] points) {
+        int bezierStart = section / 3 * 3;
+        int bezierPoints = Math.min(4, inputCount - bezierStart);
+        float sectionOffset = section % 3;
+        float segments = bezierPoints - 1;
+        float error = 0;
+        for (int p = 0; p < pieces; p++) {
+            bezierAt(input, bezierStart, bezierPoints, (sectionOffset + p / (float) pieces) / segments, points, 0);
+            bezierAt(input, bezierStart, bezierPoints, (sectionOffset + (p + 1) / (float) pieces) / segments, points, VERTEX_SIZE);
+            for (int q = 1; q < 4; q++) {
+                float fraction = q / 4f;
+                bezierAt(input, bezierStart, bezierPoints, (sectionOffset + (p + fraction) / pieces) / segments, points, 2 * VERTEX_SIZE);
+                float distance2 = 0;
+                for (int c = 0; c < VERTEX_SIZE; c++) {
+                    float line = points[c] + (points[VERTEX_SIZE + c] - points[c]) * fraction;
+                    float d = points[2 * VERTEX_SIZE + c] - line;
+                    distance2 += d * d;
                 }
+                error = Math.max(error, (float) Math.sqrt(distance2));
             }
+        }
+        return error;
+    }
 
-            for (int j = 0; j <= smoothness; j++) {
-//            for (int i = 0; i < k; i++) {
-                int nextSmooth = i*(smoothness + 1) + j;
-//                smoothVertices[i] = new Vector3();
-                smoothVertices[nextSmooth] = new Vector3();
-                float offsetOfNext = ((i%3)*(smoothness + 1) + j)/(float)((bezier.points.size - 1)*(smoothness + 1));
-                bezier.valueAt(smoothVertices[nextSmooth], offsetOfNext);
-//                catmull.valueAt(smoothVertices[i], ((float)i)/((float)k-1));
+    /**
+     * Computes point of Bezier curve with the same operations as {@link Bezier#valueAt},
+     * so the result does not depend on vertex storage
+     * @param input packed vertices
+     * @param first index of first control point of the curve
+     * @param points amount of control points, 2 to 4
+     * @param t position on curve from 0 to 1
+     * @param out output array
+     * @param outOffset index of x coordinate of result in output array
+     */
+    private static void bezierAt(float[] input, int first, int points, float t, float[] out, int outOffset) {
+        int p0 = first * VERTEX_SIZE;
+        for (int c = 0; c < VERTEX_SIZE; c++) {
+            float value;
+            if (points == 4) {
+                final float dt = 1f - t;
+                final float dt2 = dt * dt;
+                final float t2 = t * t;
+                value = input[p0 + c] * (dt2 * dt);
+                value += input[p0 + VERTEX_SIZE + c] * (3 * dt2 * t);
+                value += input[p0 + 2 * VERTEX_SIZE + c] * (3 * dt * t2);
+                value += input[p0 + 3 * VERTEX_SIZE + c] * (t2 * t);
+            } else if (points == 3) {
+                final float dt = 1f - t;
+                value = input[p0 + c] * (dt * dt);
+                value += input[p0 + VERTEX_SIZE + c] * (2 * dt * t);
+                value += input[p0 + 2 * VERTEX_SIZE + c] * (t * t);
+            } else {
+                value = input[p0 + c] * (1f - t);
+                value += input[p0 + VERTEX_SIZE + c] * t;
             }
+            out[outOffset + c] = value;
         }
+    }
 
+    /**
+     * Computes cumulative length of trajectory at each smooth vertex
+     * @param firstVertex index of smooth vertex where recomputing starts, lengths before it are kept
+     */
+    private void computeArcLengths(int firstVertex) {
+        arcLengths = (firstVertex > 0) ? ensureCapacity(arcLengths, smoothCount) : new double[smoothCount];
+        for (int i = Math.max(firstVertex, 1); i < smoothCount; i++) {
+            int v = i * VERTEX_SIZE;
+            float dx = smoothVertices[v - VERTEX_SIZE] - smoothVertices[v];
+            float dy = smoothVertices[v - VERTEX_SIZE + 1] - smoothVertices[v + 1];
+            float dz = smoothVertices[v - VERTEX_SIZE + 2] - smoothVertices[v + 2];
+            arcLengths[i] = arcLengths[i-1] + (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+    }
+
+    /**
+     * Decimates smooth vertices for each level of detail. Trajectory is decimated in independent
+     * ranges of DECIMATION_RANGE_VERTICES vertices, all ranges of all levels are decimated in parallel.
+     * @param firstVertex index of smooth vertex where vertices changed, ranges before its range are kept
+     *                    from previous levels of detail
+     */
+    private void computeLevelsOfDetail(int firstVertex) {
+        int lastVertex = smoothCount - 1;
+        int firstRange = firstChangedRange(firstVertex);
+        int rangeCount = (lastVertex - 1) / (DECIMATION_RANGE_VERTICES - 1) + 1 - firstRange;
+        int[][][] rangeVertices = new int[LOD_TOLERANCES.length][rangeCount][];
+        int taskCount = LOD_TOLERANCES.length * rangeCount;
+        if (taskCount > 1) {
+            TaskPool.POOL.invoke(new DecimationTask(rangeVertices, firstRange, 0, taskCount));
+        } else {
+            decimateRanges(rangeVertices, firstRange, 0, taskCount);
+        }
+
+        int firstRangeVertex = firstRange * (DECIMATION_RANGE_VERTICES - 1);
+        boolean appended = firstVertex > 0;
+        if (!appended) {
+            levelVertices = new int[LOD_TOLERANCES.length + 1][];
+            levelCounts = new int[LOD_TOLERANCES.length + 1];
+        }
+        for (int level = 1; level < levelVertices.length; level++) {
+            // first vertex of range is kept in every level, ranges are written after the kept ones
+            int keptBefore = firstKeptIndex(level, firstRangeVertex);
+            int keptCount = keptBefore + 1;
+            for (int[] kept : rangeVertices[level - 1]) {
+                keptCount += kept.length;
+            }
+            int[] vertices = appended ? ensureCapacity(levelVertices[level], keptCount) : new int[keptCount];
+            int k = keptBefore;
+            for (int[] kept : rangeVertices[level - 1]) {
+                System.arraycopy(kept, 0, vertices, k, kept.length);
+                k += kept.length;
+            }
+            vertices[k] = lastVertex;
+            levelVertices[level] = vertices;
+            levelCounts[level] = keptCount;
+        }
+        levelCounts[0] = smoothCount;
+    }
+
+    /**
+     * @param firstVertex index of the first changed smooth vertex
+     * @return index of the first decimation range, which changes, range ending in the first changed vertex changes too
+     */
+    private static int firstChangedRange(int firstVertex) {
+        return Math.max(firstVertex - 1, 0) / (DECIMATION_RANGE_VERTICES - 1);
+    }
+
+    /**
+     * @param level level of detail, at least 1
+     * @param rangeVertex the first vertex of decimation range, which is kept in every level
+     * @return index of the vertex in kept vertices of level
+     */
+    private int firstKeptIndex(int level, int rangeVertex) {
+        return (rangeVertex == 0) ? 0 : Arrays.binarySearch(levelVertices[level], 0, levelCounts[level], rangeVertex);
+    }
+
+    /**
+     * Decimates ranges of levels of detail
+     * @param rangeVertices receives kept vertices of range firstRange + r of level l + 1 at [l][r],
+     *                      without the last vertex of range
+     * @param firstRange index of the first decimated range of trajectory
+     * @param from first decimated range of all levels, range r of level l + 1 is l * rangeCount + r
+     * @param to range after the last one
+     */
+    private void decimateRanges(int[][][] rangeVertices, int firstRange, int from, int to) {
+        int lastVertex = smoothCount - 1;
+        int rangeCount = rangeVertices[0].length;
+        for (int i = from; i < to; i++) {
+            int level = i / rangeCount;
+            int range = i % rangeCount;
+            int start = (firstRange + range) * (DECIMATION_RANGE_VERTICES - 1);
+            int end = Math.min(start + DECIMATION_RANGE_VERTICES - 1, lastVertex);
+            rangeVertices[level][range] = LineDecimator.decimateRange(smoothVertices, start, end, LOD_TOLERANCES[level]);
+        }
+    }
+
+    /**
+     * Decimates ranges of levels of detail, splits them in halves until one range is left
+     */
+    private class DecimationTask extends RecursiveAction {
+
+        private final int[][][] rangeVertices;
+        private final int firstRange;
+        private final int from;
+        private final int to;
+
+        DecimationTask(int[][][] rangeVertices, int firstRange, int from, int to) {
+            this.rangeVertices = rangeVertices;
+            this.firstRange = firstRange;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                decimateRanges(rangeVertices, firstRange, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecimationTask(rangeVertices, firstRange, from, middle),
+                        new DecimationTask(rangeVertices, firstRange, middle, to));
+            }
+        }
     }
 
     /**
@@ -169,26 +706,13 @@ public class Trajectory3D {
 
     /**
      * Scales all given vertices to new size
-     * @param input array of vertices
+     * @param input packed vertices
      * @param scale the scale
      * @return scales vertices
      */
-    private void scale(Vector3[] input, float scale) {
+    private void scale(float[] input, float scale) {
         for (int i = 0; i < input.length; i++) {
-            input[i].scl(scale);
-        }
-    }
-
-    /**
-     * Computes speed at each section based on times,
-     * knowing speed is necessary for computing ship position change
-     */
-    private void computeSpeed() {
-        int sections = times.length - 1;
-        speeds = new float[sections];
-        for (int i = 0; i < sections; i++) {
-            float deltat = times[i+1] - times[i];
-            speeds[i] = 1/(sections * deltat);  // speed applies for whole section between two time points
+            input[i] *= scale;
         }
     }
 
@@ -208,7 +732,7 @@ public class Trajectory3D {
      */
     public boolean addPitchHistory(float[] input) {
         if (isValidHistory(input)) {
-            this.pitchHistory = input;
+            channels.add(CHANNEL_PITCH, LazyHistory.of(input));
             return true;
         } else {
             LOGGER.log(Level.FINE, "Trajectory: Invalid input for pitch history.");
@@ -216,6 +740,14 @@ public class Trajectory3D {
         }
     }
 
+    /**
+     * Adds pitch history to trajectory, which is loaded on its first access
+     * @param history the history
+     */
+    public void addPitchHistory(LazyHistory history) {
+        channels.add(CHANNEL_PITCH, history);
+    }
+
     /**
      * Adds mass history to trajectory
      * @param input the history
@@ -223,7 +755,7 @@ public class Trajectory3D {
      */
     public boolean addMassHistory(float[] input) {
         if (isValidHistory(input)) {
-            this.massHistory = input;
+            channels.add(CHANNEL_MASS, LazyHistory.of(input));
             return true;
         } else {
             LOGGER.log(Level.FINE, "Trajectory: Invalid input for mass history.");
@@ -231,6 +763,14 @@ public class Trajectory3D {
         }
     }
 
+    /**
+     * Adds mass history to trajectory, which is loaded on its first access
+     * @param history the history
+     */
+    public void addMassHistory(LazyHistory history) {
+        channels.add(CHANNEL_MASS, history);
+    }
+
     /**
      * Adds vertical velocity history to trajectory
      * @param input the history
@@ -238,7 +778,7 @@ public class Trajectory3D {
      */
     public boolean addVrHistory(float[] input) {
         if (isValidHistory(input)) {
-            this.vrHistory = input;
+            channels.add(CHANNEL_VR, LazyHistory.of(input));
             return true;
         } else {
             LOGGER.log(Level.FINE, "Trajectory: Invalid input for vertical velocity history.");
@@ -246,6 +786,14 @@ public class Trajectory3D {
         }
     }
 
+    /**
+     * Adds vertical velocity history to trajectory, which is loaded on its first access
+     * @param history the history
+     */
+    public void addVrHistory(LazyHistory history) {
+        channels.add(CHANNEL_VR, history);
+    }
+
     /**
      * Adds horizontal velocity history to trajectory
      * @param input the history
@@ -253,7 +801,7 @@ public class Trajectory3D {
      */
     public boolean addVthHistory(float[] input) {
         if (isValidHistory(input)) {
-            this.vthHistory = input;
+            channels.add(CHANNEL_VTH, LazyHistory.of(input));
             return true;
         } else {
             LOGGER.log(Level.FINE, "Trajectory: Invalid input for horizontal velocity history.");
@@ -261,19 +809,108 @@ public class Trajectory3D {
         }
     }
 
+    /**
+     * Adds horizontal velocity history to trajectory, which is loaded on its first access
+     * @param history the history
+     */
+    public void addVthHistory(LazyHistory history) {
+        channels.add(CHANNEL_VTH, history);
+    }
+
+    /**
+     * Adds history of any channel to trajectory
+     * @param name name of channel
+     * @param input the history
+     * @return success of operation
+     */
+    public boolean addHistory(String name, float[] input) {
+        if (isValidHistory(input)) {
+            channels.add(name, LazyHistory.of(input));
+            return true;
+        } else {
+            LOGGER.log(Level.FINE, "Trajectory: Invalid input for {0} history.", name);
+            return false;
+        }
+    }
+
+    /**
+     * Appends samples to the end of trajectory, only the smooth vertices affected by new control
+     * vertices, their ranges of levels of detail and their nodes of spatial index are recomputed.
+     * Arrays grow by doubling, so appending takes time proportional to appended samples.
+     * If vertex budget is set, recomputed sections get the part of it left by kept sections.
+     * Model is updated in place if it has room for new vertices, otherwise it is disposed.
+     * @param samples new samples
+     */
+    public void append(TrajectorySamples samples) {
+        if (samples.vertices.length > 0) {
+            int oldCount = controlCount;
+            scale(samples.vertices, SCALE);
+            controlVertices = ensureCapacity(controlVertices, oldCount * VERTEX_SIZE + samples.vertices.length);
+            System.arraycopy(samples.vertices, 0, controlVertices, oldCount * VERTEX_SIZE, samples.vertices.length);
+            controlCount = oldCount + samples.vertices.length / VERTEX_SIZE;
+            // Bezier segments start every 3 vertices, only the last one did not have all 4 vertices
+            int firstChangedSegment = (oldCount - 1) / 3 * 3;
+            // kept sections were smoothed with more of the budget, it takes appending of part of trajectory
+            // proportional to its length to exceed it, so smoothing it whole again keeps appending linear
+            if (exceedsVertexBudget()) {
+                firstChangedSegment = 0;
+            }
+            int firstChangedVertex = createSmoothVertices(firstChangedSegment);
+            updateModel(firstChangedVertex);
+        }
+        if (samples.times.length > 0) {
+            times = ensureCapacity(times, timeCount + samples.times.length);
+            System.arraycopy(samples.times, 0, times, timeCount, samples.times.length);
+            timeCount += samples.times.length;
+        }
+        if (samples.pitch.length > 0) appendHistory(CHANNEL_PITCH, samples.pitch);
+        if (samples.mass.length > 0) appendHistory(CHANNEL_MASS, samples.mass);
+        if (samples.vr.length > 0) appendHistory(CHANNEL_VR, samples.vr);
+        if (samples.vth.length > 0) appendHistory(CHANNEL_VTH, samples.vth);
+        for (Map.Entry<String, float[]> channel : samples.channels.entrySet()) {
+            if (channel.getValue().length > 0) appendHistory(channel.getKey(), channel.getValue());
+        }
+    }
+
+    /**
+     * @return true if smooth vertices exceed vertex budget by more than 1/BUDGET_OVERSHOOT of their amount,
+     *         budget is never less than amount of control vertices
+     */
+    private boolean exceedsVertexBudget() {
+        int budget = smoothing.getVertexBudget();
+        return budget > 0 && smoothCount - Math.max(budget, controlCount) > smoothCount / BUDGET_OVERSHOOT;
+    }
+
+    /**
+     * Appends values to the end of history, creates the history if it is missing
+     * @param name name of channel
+     * @param appended new values
+     */
+    private void appendHistory(String name, float[] appended) {
+        if (isValidHistory(appended)) {
+            channels.append(name, appended);
+        } else {
+            LOGGER.log(Level.FINE, "Trajectory: Invalid input for {0} history.", name);
+        }
+    }
+
     /**
      * Returns speed at specified position
      * @param position value from interval [0,1] excluding 1
      * @return positive value or -1 for invalid position
      */
     public float speedAt(float position) {
+        int sections = timeCount - 1;
+        int section;
         if (position >= 0 && position < 1) {
-            return speeds[(int) (position * speeds.length)];
+            section = (int) (position * sections);
         } else if (position == 1) {
-            return speeds[speeds.length-1]; // determines speed for way back from finish
+            section = sections - 1;     // determines speed for way back from finish
         } else {
             return -1;
         }
+        float deltat = times[section + 1] - times[section];
+        return 1/(sections * deltat);   // speed applies for whole section between two time points
     }
 
     /**
@@ -282,35 +919,166 @@ public class Trajectory3D {
      * @return vertex or null for invalid position
      */
     public Vector3 vertexAt(float position) {
+        return vertexAt(position, new Vector3());
+    }
+
+    /**
+     * Returns vertex at specified postion without creating new vector
+     * @param position value from interval [0,1] including bounds
+     * @param out vector which receives the vertex
+     * @return out or null for invalid position
+     */
+    public Vector3 vertexAt(float position, Vector3 out) {
         if (position >= 0 && position <= 1) {
-            float traveledVertices = position * (smoothVertices.length - 1);
-            Vector3 sectionStart = smoothVertices[(int)traveledVertices];
-            Vector3 sectionEnd;
-            if (((int)traveledVertices + 1) < smoothVertices.length - 1) {
-                sectionEnd = smoothVertices[(int)traveledVertices + 1];
+            int vertexCount = smoothCount;
+            double traveledVertices = smoothIndexAt(position);
+            int sectionStart = (int)traveledVertices * VERTEX_SIZE;
+            int sectionEnd;
+            if (((int)traveledVertices + 1) < vertexCount - 1) {
+                sectionEnd = sectionStart + VERTEX_SIZE;
             } else {
                 sectionEnd = sectionStart;
             }
-            float tdec = traveledVertices - ((int)traveledVertices);    //the decimal part of traveledVertices
-//            Vector3 result = new Vector3(sectionStart).mulAdd(new Vector3(sectionEnd).sub(sectionStart), tdec);
-            Vector3 result = new Vector3(
-                    sectionStart.x + (sectionEnd.x - sectionStart.x) * tdec,
-                    sectionStart.y + (sectionEnd.y - sectionStart.y) * tdec,
-                    sectionStart.z + (sectionEnd.z - sectionStart.z) * tdec
+            float tdec = (float) (traveledVertices - ((int)traveledVertices));    //the decimal part of traveledVertices
+            return out.set(
+                    smoothVertices[sectionStart] + (smoothVertices[sectionEnd] - smoothVertices[sectionStart]) * tdec,
+                    smoothVertices[sectionStart + 1] + (smoothVertices[sectionEnd + 1] - smoothVertices[sectionStart + 1]) * tdec,
+                    smoothVertices[sectionStart + 2] + (smoothVertices[sectionEnd + 2] - smoothVertices[sectionStart + 2]) * tdec
             );
-            return result;
         } else {
             return null;
         }
     }
 
+    /**
+     * Returns distance flown along trajectory from start to specified position
+     * @param position value from interval [0,1] including bounds
+     * @return distance in meters, 0 for invalid position
+     */
+    public float distanceAt(float position) {
+        if (position >= 0 && position < 1) {
+            double traveledVertices = smoothIndexAt(position);
+            int index = Math.min((int) traveledVertices, smoothCount - 2);
+            double lengthBefore = arcLengths[index];
+            double lengthAfter = arcLengths[index + 1];
+            return (float) ((lengthBefore + (lengthAfter - lengthBefore) * (traveledVertices - index)) / SCALE);
+        } else if (position == 1) {
+            return getLength();
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds position where flown distance reaches given value, binary search in table of lengths
+     * @param distance distance from start in meters, clamped to length of trajectory
+     * @return position from interval [0,1]
+     */
+    public float positionAtDistance(float distance) {
+        int last = smoothCount - 1;
+        double scaledDistance = Math.min(Math.max(distance * (double) SCALE, 0), arcLengths[last]);
+        int index = Arrays.binarySearch(arcLengths, 0, smoothCount, scaledDistance);
+        if (index < 0) {
+            index = -index - 2;     // last vertex before the distance
+        }
+        if (index >= last) {
+            return 1;
+        }
+        double section = arcLengths[index + 1] - arcLengths[index];
+        double fraction = (section > 0) ? (scaledDistance - arcLengths[index]) / section : 0;
+        return positionAtSmoothIndex(index + fraction);
+    }
+
+    /**
+     * Finds index of smooth vertex at position, position is linear in control vertices
+     * (and so in time-points), adaptive smoothing spreads each section between them evenly
+     * @param position value from interval [0,1] including bounds
+     * @return index of smooth vertex with decimal part between vertices
+     */
+    private double smoothIndexAt(float position) {
+        int last = smoothCount - 1;
+        if (sectionStarts == null) {
+            return position * last;
+        }
+        int sections = controlCount - 1;
+        double traveledSections = position * (double) sections;
+        int section = Math.min((int) traveledSections, sections - 1);
+        int sectionPoints = sectionStarts[section + 1] - sectionStarts[section];
+        return Math.min(sectionStarts[section] + (traveledSections - section) * sectionPoints, last);
+    }
+
+    /**
+     * Inverse to {@link #smoothIndexAt(float)}
+     * @param smoothIndex index of smooth vertex with decimal part between vertices
+     * @return position from interval [0,1]
+     */
+    private float positionAtSmoothIndex(double smoothIndex) {
+        if (sectionStarts == null) {
+            return (float) (smoothIndex / (smoothCount - 1));
+        }
+        int sections = controlCount - 1;
+        int section = Arrays.binarySearch(sectionStarts, 0, controlCount, (int) smoothIndex);
+        if (section < 0) {
+            section = -section - 2;     // section containing the vertex
+        }
+        section = Math.min(section, sections - 1);
+        int sectionPoints = sectionStarts[section + 1] - sectionStarts[section];
+        return (float) ((section + (smoothIndex - sectionStarts[section]) / sectionPoints) / sections);
+    }
+
+    /**
+     * @param vertex index of smooth vertex
+     * @return position of smooth vertex from interval [0,1]
+     */
+    public float positionOfSmoothVertex(int vertex) {
+        return positionAtSmoothIndex(vertex);
+    }
+
+    /**
+     * Returns vertex at given distance along trajectory
+     * @param distance distance from start in meters, clamped to length of trajectory
+     * @return vertex
+     */
+    public Vector3 vertexAtDistance(float distance) {
+        return vertexAt(positionAtDistance(distance));
+    }
+
+    /**
+     * @return length of whole trajectory in meters
+     */
+    public float getLength() {
+        return (float) (arcLengths[smoothCount - 1] / SCALE);
+    }
+
     /**
      * Returns elapsed time since trajectory start at specified position
      * @param position value from interval [0,1] excluding 1
      * @return 0 for invalid position
      */
     public float elapsedTimeAt(float position) {
-        return getValueAtPosition(times, position);
+        return getValueAtPosition(times, timeCount, position);
+    }
+
+    /**
+     * Finds position where elapsed time reaches given value, binary search in times,
+     * which do not have to be spread evenly
+     * @param time elapsed time in seconds, clamped to trajectory times
+     * @return position from interval [0,1]
+     */
+    public float positionAtTime(float time) {
+        int last = timeCount - 1;
+        if (time <= times[0]) {
+            return 0;
+        } else if (time >= times[last]) {
+            return 1;
+        }
+        int index = Arrays.binarySearch(times, 0, timeCount, time);
+        if (index < 0) {
+            index = -index - 2;     // last checkpoint before the time
+        }
+        float section = times[index + 1] - times[index];
+        double fraction = (section > 0) ? (time - times[index]) / (double) section : 0;
+        return (float) ((index + fraction) / last);
     }
 
     /**
@@ -319,7 +1087,7 @@ public class Trajectory3D {
      * @return 0 for invalid position or pitch history not set
      */
     public float pitchAt(float position) {
-        return getValueAtPosition(pitchHistory, position);
+        return channels.valueAt(channels.indexOf(CHANNEL_PITCH), position);
     }
 
     /**
@@ -328,7 +1096,7 @@ public class Trajectory3D {
      * @return 0 for invalid position of mass history not set
      */
     public float massAt(float position) {
-        return getValueAtPosition(massHistory, position);
+        return channels.valueAt(channels.indexOf(CHANNEL_MASS), position);
     }
 
     /**
@@ -337,7 +1105,7 @@ public class Trajectory3D {
      * @return 0 for invalid position or vertical velocity history not set
      */
     public float verticalVelocityAt(float position) {
-        return getValueAtPosition(vrHistory, position);
+        return channels.valueAt(channels.indexOf(CHANNEL_VR), position);
     }
 
     /**
@@ -346,28 +1114,79 @@ public class Trajectory3D {
      * @return 0 for invalid position or horizontal velocity history not set
      */
     public float horizontalVelocityAt(float position) {
-        return getValueAtPosition(vthHistory, position);
+        return channels.valueAt(channels.indexOf(CHANNEL_VTH), position);
+    }
+
+    /**
+     * Returns values of all histories at specified position, index of value is index of its channel
+     * in {@link #getChannels()}. Histories, which are not loaded yet, give 0 and are not loaded by it.
+     * @param position value from interval [0,1]
+     * @param out receives the values, at least as long as amount of channels
+     */
+    public void sampleAll(float position, float[] out) {
+        channels.sampleAll(position, out);
+    }
+
+    /**
+     * Checks whether histories can be accessed without waiting for their loading
+     * @return true if every set history is loaded
+     */
+    public boolean areHistoriesLoaded() {
+        return channels.isLoaded();
+    }
+
+    /**
+     * @param name name of channel
+     * @return true if history of channel can be accessed without waiting for its loading, or it is not set
+     */
+    public boolean isHistoryLoaded(String name) {
+        int channel = channels.indexOf(name);
+        return channel < 0 || channels.get(channel).isLoaded();
+    }
+
+    /**
+     * Loads histories, which are not loaded yet, in background thread
+     */
+    public void loadHistoriesInBackground() {
+        if (areHistoriesLoaded()) {
+            return;
+        }
+        final List<LazyHistory> histories = new ArrayList<>();
+        for (int channel = 0; channel < channels.size(); channel++) {
+            histories.add(channels.get(channel));
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (LazyHistory history : histories) {
+                    history.get();
+                }
+            }
+        }, "history-loading");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
      * Get value from ordered array proportional to position between 0 and 1
      * @param array the ordered array
+     * @param count amount of valid values at start of array
      * @param position the position between 0 and 1
      * @return value from array
      */
-    private float getValueAtPosition(float[] array, float position) {
+    private float getValueAtPosition(float[] array, int count, float position) {
         if (array == null) {
             return 0;
-        } else if (array.length == 1) {
+        } else if (count == 1) {
             return array[0];
         } else if (position >= 0 && position < 1) {
-            float floatIndex = position * (array.length - 1);
+            float floatIndex = position * (count - 1);
             float valueBefore = array[(int) floatIndex];
             float valueAfter = array[(int) floatIndex + 1];
             float decimalpartOfIndex = floatIndex - ((int) floatIndex);    //the decimal part of traveledVertices
             return valueBefore + (valueAfter - valueBefore) * decimalpartOfIndex;
         } else if (position == 1) {
-            return array[array.length - 1];
+            return array[count - 1];
         } else {
             return 0;
         }
@@ -379,66 +1198,447 @@ public class Trajectory3D {
      * @return 0 if position is invalid
      */
     public float downrangeDistFromTargetAt(float position) {
-        Vector3 target = controlVertices[controlVertices.length-1];
-        Vector3 current = vertexAt(position);
-        if (current != null) {
-            float thetaTarget = (float)Math.atan2(target.y, target.x);
-            float thetaCurrent = (float)Math.atan2(current.y, current.x);
-            if (thetaTarget < 0) thetaTarget += 2*Math.PI;
-            if (thetaCurrent < 0) thetaCurrent += 2*Math.PI;
-
-//            if (thetaTarget > thetaCurrent) {
-                return Constants.MOON_RADIUS * Math.abs(thetaTarget - thetaCurrent);
-//            } else {
-//                return Constants.MOON_RADIUS * (thetaCurrent - thetaTarget);
-//            }
+        if (position >= 0 && position <= 1) {
+            return Constants.MOON_RADIUS * Math.abs(targetCentralAngle - centralAngleAt(position));
         } else {
             return 0;
         }
     }
 
-    private Mesh getMesh(Vector3[] points) {
-        MeshBuilder meshBuilder = new MeshBuilder();
-        meshBuilder.begin(Usage.Position | Usage.Normal, GL20.GL_LINES);
-        for (int i = 0; i < points.length - 1; i++) {
-            meshBuilder.line(points[i], points[i+1]);
+    /**
+     * Returns altitude above Moon's surface computed from x and y coordinates,
+     * interpolated between smooth vertices like {@link #vertexAt(float)}
+     * @param position value from interval [0,1] including bounds
+     * @return altitude in meters, 0 for invalid position
+     */
+    public float altitudeAt(float position) {
+        if (position >= 0 && position <= 1) {
+            double traveledVertices = smoothIndexAt(position);
+            int before = (int) traveledVertices;
+            int after = tableSectionEnd(before);
+            float tdec = (float) (traveledVertices - before);
+            return altitudes[before] + (altitudes[after] - altitudes[before]) * tdec;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns central angle theta in x-y plane, interpolated between smooth vertices like {@link #vertexAt(float)}
+     * @param position value from interval [0,1] including bounds
+     * @return angle from x axis in radians, from interval [0,2pi), 0 for invalid position
+     */
+    public float centralAngleAt(float position) {
+        if (position >= 0 && position <= 1) {
+            double traveledVertices = smoothIndexAt(position);
+            int before = (int) traveledVertices;
+            int after = tableSectionEnd(before);
+            float tdec = (float) (traveledVertices - before);
+            // shorter way between angles, which can be on both sides of x axis
+            float difference = centralAngles[after] - centralAngles[before];
+            if (difference > Math.PI) difference -= 2*Math.PI;
+            else if (difference < -Math.PI) difference += 2*Math.PI;
+            float theta = centralAngles[before] + difference * tdec;
+            if (theta < 0) theta += 2*Math.PI;
+            else if (theta >= 2*Math.PI) theta -= 2*Math.PI;
+            return theta;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds position of trajectory nearest to given point
+     * @param point the point, same units as {@link #vertexAt(float)}
+     * @return position from interval [0,1]
+     */
+    public float nearestPosition(Vector3 point) {
+        return positionAtSmoothIndex(spatialIndex.nearest(point.x, point.y, point.z));
+    }
+
+    /**
+     * Finds the first position of trajectory hit by ray, trajectory is hit if it is closer to ray
+     * than tolerance growing with distance along ray
+     * @param ray the ray, same units as {@link #vertexAt(float)}
+     * @param tolerance allowed distance from ray per unit of distance along ray, e.g. size of pixel at unit distance
+     * @return position from interval [0,1], -1 if ray misses trajectory
+     */
+    public float pickPosition(Ray ray, float tolerance) {
+        double smoothIndex = spatialIndex.pick(new float[]{ ray.origin.x, ray.origin.y, ray.origin.z },
+                new float[]{ ray.direction.x, ray.direction.y, ray.direction.z }, tolerance);
+        return (smoothIndex < 0) ? -1 : positionAtSmoothIndex(smoothIndex);
+    }
+
+    /**
+     * Finds smooth vertices within radius from given point
+     * @param point the point, same units as {@link #vertexAt(float)}
+     * @param radius the radius, same units as point
+     * @param out receives indices of smooth vertices in ascending order, it is not cleared
+     */
+    public void verticesWithin(Vector3 point, float radius, IntArray out) {
+        spatialIndex.within(point.x, point.y, point.z, radius, out);
+    }
+
+    /**
+     * @param rangeLines amount of lines between smooth vertices in one range, power of two
+     * @return amount of ranges covering the whole trajectory
+     */
+    public int getRangeCount(int rangeLines) {
+        return spatialIndex.rangeCount(rangeLines);
+    }
+
+    /**
+     * Measures distance of point from bounding boxes of consecutive ranges of trajectory,
+     * range i holds lines between smooth vertices i * rangeLines and (i + 1) * rangeLines
+     * @param point the point, same units as {@link #vertexAt(float)}
+     * @param rangeLines amount of lines between smooth vertices in one range, power of two
+     * @param out receives distance from box of each range, 0 inside, at least {@link #getRangeCount(int)} long
+     */
+    public void rangeDistances(Vector3 point, int rangeLines, float[] out) {
+        spatialIndex.rangeDistances(rangeLines, point.x, point.y, point.z, out);
+    }
+
+    /**
+     * @param sectionStart index of smooth vertex where section starts
+     * @return index of smooth vertex where section ends, the same one for the last section as in {@link #vertexAt(float)}
+     */
+    private int tableSectionEnd(int sectionStart) {
+        return (sectionStart + 1 < smoothCount - 1) ? sectionStart + 1 : sectionStart;
+    }
+
+    /**
+     * Creates mesh of vertices of level of detail drawn as line strip without indices,
+     * vertex buffer is filled at once, it has room for all vertices of capacity of level
+     * and appended vertices are written into it by {@link #updateModel(int)}
+     * @param level level of detail
+     * @return the mesh
+     */
+    private Mesh getMesh(int level) {
+        int capacity = (level > 0) ? levelVertices[level].length : smoothVertices.length / VERTEX_SIZE;
+        if (!hasVertexColors()) {
+            float[] vertices = smoothVertices;
+            if (level > 0) {
+                vertices = new float[capacity * VERTEX_SIZE];
+                putMeshVertices(level, 0, levelCounts[level], vertices);
+            }
+            Mesh mesh = new Mesh(true, capacity, 0, VertexAttribute.Position());
+            mesh.setVertices(vertices);
+            return mesh;
+        }
+        // position followed by packed colour
+        float[] vertices = new float[capacity * (VERTEX_SIZE + 1)];
+        putMeshVertices(level, 0, levelCounts[level], vertices);
+        Mesh mesh = new Mesh(true, capacity, 0, VertexAttribute.Position(), VertexAttribute.ColorPacked());
+        mesh.setVertices(vertices);
+        return mesh;
+    }
+
+    /**
+     * Copies vertices of level of detail in layout of its mesh
+     * @param level level of detail
+     * @param from index of the first copied vertex of level
+     * @param to index after the last copied vertex of level
+     * @param out receives positions from its start, each one followed by packed colour if model is coloured by vertices
+     */
+    private void putMeshVertices(int level, int from, int to, float[] out) {
+        int[] kept = (level > 0) ? levelVertices[level] : null;
+        boolean colored = hasVertexColors();
+        int stride = colored ? VERTEX_SIZE + 1 : VERTEX_SIZE;
+        for (int i = from; i < to; i++) {
+            int vertex = (kept == null) ? i : kept[i];
+            int offset = (i - from) * stride;
+            System.arraycopy(smoothVertices, vertex * VERTEX_SIZE, out, offset, VERTEX_SIZE);
+            if (colored) {
+                out[offset + VERTEX_SIZE] = vertexColors[vertex];
+            }
         }
-        return meshBuilder.end();
     }
 
     /**
-     * Builds model representing trajectory
-     * if the trajectory has too many vertices, it is split into multiple Meshes
+     * Writes smooth vertices changed by appending into vertex buffers of model, each level uploads only
+     * its changed tail. Model is disposed if a buffer has no room for new vertices or colouring changed,
+     * next {@link #buildModel()} builds it again with room for more vertices.
+     * @param firstVertex index of the first changed smooth vertex
+     */
+    private void updateModel(int firstVertex) {
+        if (model == null) { return; }
+        boolean colored = hasVertexColors();
+        boolean fits = colored == modelColored;
+        for (int level = 0; fits && level < levelCounts.length; level++) {
+            fits = levelCounts[level] <= getMeshPart(level).mesh.getMaxVertices();
+        }
+        if (!fits) {
+            dispose();
+            return;
+        }
+        int stride = colored ? VERTEX_SIZE + 1 : VERTEX_SIZE;
+        int rangeVertex = firstChangedRange(firstVertex) * (DECIMATION_RANGE_VERTICES - 1);
+        for (int level = 0; level < levelCounts.length; level++) {
+            int first = (level == 0) ? firstVertex : firstKeptIndex(level, rangeVertex);
+            float[] vertices = new float[(levelCounts[level] - first) * stride];
+            putMeshVertices(level, first, levelCounts[level], vertices);
+            MeshPart meshPart = getMeshPart(level);
+            meshPart.mesh.updateVertices(first * stride, vertices);
+            meshPart.size = levelCounts[level];
+        }
+    }
+
+    /**
+     * @param level level of detail
+     * @return part of model holding line strip of level
+     */
+    private MeshPart getMeshPart(int level) {
+        return model.nodes.get(level).parts.get(0).meshPart;
+    }
+
+    /**
+     * @return true if model is coloured by vertices, colours of vertices added by appending are missing
+     */
+    private boolean hasVertexColors() {
+        return vertexColors != null && vertexColors.length == smoothCount;
+    }
+
+    /**
+     * Sets colour of each smooth vertex, model is built again by next {@link #buildModel()}
+     * @param colors packed colour of each smooth vertex, see {@link Color#toFloatBits()},
+     *               null for the same colour of whole model
+     */
+    public void setVertexColors(float[] colors) {
+        if (colors == vertexColors) { return; }
+        vertexColors = colors;
+        dispose();
+    }
+
+    /**
+     * Builds model representing trajectory, node with index i holds line strip of level of detail i
+     * in one part, line j of level starts in its j-th vertex
      */
     public void buildModel() {
         if (model != null) { return; }
-        Material modelMaterial = new Material(ColorAttribute.createDiffuse(Color.BLUE));
-
-        Vector3[] modelVertices = smoothVertices;
+        // colours of vertices are multiplied by diffuse colour
+        Material modelMaterial = new Material(ColorAttribute.createDiffuse(hasVertexColors() ? Color.WHITE : Color.BLUE));
 
         ModelBuilder modelBuilder = new ModelBuilder();
         modelBuilder.begin();
+        for (int level = 0; level < levelVertices.length; level++) {
+            modelBuilder.node().id = "lod_" + level;
+            modelBuilder.part("catmull_" + level, getMesh(level), GL20.GL_LINE_STRIP, 0, levelCounts[level], modelMaterial);
+        }
+        model = modelBuilder.end();
+        modelColored = hasVertexColors();
+    }
 
-        int lastStart = 0;
-        for (int i = 1; i < modelVertices.length; i++) {
+    /**
+     * @return amount of levels of detail including full resolution
+     */
+    public int getLevelCount() {
+        return levelVertices.length;
+    }
 
-            // Max vertices in Mesh can be Short.MAX_VALUE (32672). We are creating lines, so almost every vertex is counted twice.
-            if (i % (Short.MAX_VALUE/2) == 0 || i == modelVertices.length - 1) {
-                modelBuilder.part("catmull_" + lastStart, getMesh(Arrays.copyOfRange(modelVertices, lastStart, i)), GL20.GL_LINES, modelMaterial);
-                lastStart = i;
-            }
+    /**
+     * @param level level of detail
+     * @return indices of smooth vertices kept in level in ascending order, only the first
+     *         {@link #getLevelVertexCount(int)} are valid, null for level 0 with all of them, must not be modified
+     */
+    public int[] getLevelVertices(int level) {
+        return levelVertices[level];
+    }
+
+    /**
+     * @param level level of detail
+     * @return amount of smooth vertices kept in level
+     */
+    public int getLevelVertexCount(int level) {
+        return levelCounts[level];
+    }
 
+    /**
+     * Returns index of smooth vertex at specified position, or the last one before it
+     * @param position value from interval [0,1] including bounds
+     * @return index of smooth vertex
+     */
+    public int smoothVertexAt(float position) {
+        return (int) smoothIndexAt(Math.max(0, Math.min(1, position)));
+    }
+
+    /**
+     * @return scaled control vertices as packed x,y,z triplets, must not be modified
+     */
+    public float[] getControlVertices() {
+        return trim(controlVertices, controlCount * VERTEX_SIZE);
+    }
+
+    /**
+     * @return smooth vertices as packed x,y,z triplets, must not be modified
+     */
+    public float[] getSmoothVertices() {
+        return trim(smoothVertices, smoothCount * VERTEX_SIZE);
+    }
+
+    /**
+     * @return amount of smooth vertices
+     */
+    public int getSmoothVertexCount() {
+        return smoothCount;
+    }
+
+    /**
+     * @param array array with valid values at its start
+     * @param length amount of valid values
+     * @return the array if all its values are valid, copy of valid values otherwise
+     */
+    private static float[] trim(float[] array, int length) {
+        return (array.length == length) ? array : Arrays.copyOf(array, length);
+    }
+
+    /**
+     * @return amount of smooth vertices of each section between two control vertices
+     *         or null for fixed smoothing
+     */
+    public float[] getSectionPoints() {
+        if (sectionStarts == null) {
+            return null;
         }
-        model = modelBuilder.end();
+        float[] sectionPoints = new float[controlCount - 1];
+        for (int i = 0; i < sectionPoints.length; i++) {
+            sectionPoints[i] = sectionStarts[i + 1] - sectionStarts[i];
+        }
+        return sectionPoints;
+    }
+
+    public Smoothing getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * @return discrete times, must not be modified
+     */
+    public float[] getTimes() {
+        return trim(times, timeCount);
+    }
+
+    /**
+     * @return amount of discrete times
+     */
+    public int getTimeCount() {
+        return timeCount;
+    }
+
+    /**
+     * @return pitch history or null if not set, must not be modified, the first access loads it
+     */
+    public float[] getPitchHistory() {
+        return getHistory(CHANNEL_PITCH);
+    }
+
+    /**
+     * @return mass history or null if not set, must not be modified, the first access loads it
+     */
+    public float[] getMassHistory() {
+        return getHistory(CHANNEL_MASS);
+    }
+
+    /**
+     * @return vertical velocity history or null if not set, must not be modified, the first access loads it
+     */
+    public float[] getVrHistory() {
+        return getHistory(CHANNEL_VR);
+    }
+
+    /**
+     * @return horizontal velocity history or null if not set, must not be modified, the first access loads it
+     */
+    public float[] getVthHistory() {
+        return getHistory(CHANNEL_VTH);
+    }
+
+    /**
+     * Summary of history for plotting, positions of time range are given by {@link #positionAtTime(float)}
+     * @return envelope of pitch history or null if not set
+     */
+    public HistoryEnvelope getPitchEnvelope() {
+        return getEnvelope(CHANNEL_PITCH);
+    }
+
+    /**
+     * @return envelope of mass history or null if not set
+     */
+    public HistoryEnvelope getMassEnvelope() {
+        return getEnvelope(CHANNEL_MASS);
+    }
+
+    /**
+     * @return envelope of vertical velocity history or null if not set
+     */
+    public HistoryEnvelope getVrEnvelope() {
+        return getEnvelope(CHANNEL_VR);
+    }
+
+    /**
+     * @return envelope of horizontal velocity history or null if not set
+     */
+    public HistoryEnvelope getVthEnvelope() {
+        return getEnvelope(CHANNEL_VTH);
+    }
+
+    /**
+     * @param name name of channel
+     * @return history of channel or null if not set, must not be modified, the first access loads it
+     */
+    public float[] getHistory(String name) {
+        int channel = channels.indexOf(name);
+        return (channel < 0) ? null : channels.get(channel).get();
+    }
+
+    /**
+     * @param name name of channel
+     * @return envelope of history of channel or null if not set
+     */
+    public HistoryEnvelope getEnvelope(String name) {
+        int channel = channels.indexOf(name);
+        return (channel < 0) ? null : channels.get(channel).getEnvelope();
+    }
+
+    /**
+     * @return histories by channel name, channels must not be added through it
+     */
+    public HistoryChannels getChannels() {
+        return channels;
     }
 
     public Model getModel() {
         return model;
     }
 
+    /**
+     * Estimates memory taken by the trajectory, including vertex buffers of its model
+     * @return size in bytes
+     */
+    public long getMemorySize() {
+        final long MODEL_VERTEX_BYTES = hasVertexColors() ? 4 * 4 : 3 * 4;  // position, colour
+        long size = 4L * (controlVertices.length + smoothVertices.length);
+        size += MODEL_VERTEX_BYTES * (smoothVertices.length / VERTEX_SIZE);    // buffers of model have room of whole capacity
+        size += 8L * arcLengths.length;
+        size += 4L * (altitudes.length + centralAngles.length);
+        size += spatialIndex.getMemorySize();
+        if (sectionStarts != null) {
+            size += 4L * sectionStarts.length;
+        }
+        for (int level = 1; level < levelVertices.length; level++) {
+            size += (4 + MODEL_VERTEX_BYTES) * levelVertices[level].length;    // kept indices, vertices of model
+        }
+        size += 4L * times.length;
+        size += channels.getMemorySize();
+        if (vertexColors != null) {
+            size += 4L * vertexColors.length;
+        }
+        return size;
+    }
+
     public void dispose() {
         if (model != null) {
             model.dispose();
+            model = null;
         }
     }
 }
@@ -0,0 +1,471 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import com.badlogic.gdx.math.Vector3;
+import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Comparison of flown trajectory with nominal one aligned on mission time
+ *
+ * Both trajectories are sampled on common grid of times spread equally across time, which both
+ * of them cover, with as many samples as the denser one has in that time. Sample i is at time
+ * startTime + i * step, so time is turned into sample in constant time. Every sample holds distance
+ * between positions of both trajectories and difference of each history, which both of them have.
+ * Long ranges of samples are computed in parallel, every task finds its first checkpoints
+ * by binary search and then follows both timelines forward.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectoryComparison {
+
+    /** Logger instance */
+    public static final Logger LOGGER = MyLog.getLogger( TrajectoryComparison.class.getName() );
+
+    /** Most samples or smooth vertices computed by one task */
+    private static final int COMPARING_TASK_SAMPLES = 8192;
+
+    private final Trajectory3D nominal;
+    private final Trajectory3D flown;
+
+    /** Time of the first sample and time between two samples */
+    private final double startTime;     // (seconds)
+    private final double step;          // (seconds)
+
+    /** Distance between flown and nominal position at each sample */
+    private final float[] deviations;   // (meters)
+
+    /** Deviation at each smooth vertex of flown trajectory, NaN where nominal trajectory is missing */
+    private final float[] vertexDeviations;     // (meters)
+
+    /** Names of histories of both trajectories */
+    private final List<String> channelNames = new ArrayList<>();
+
+    /** Index of each compared channel in channels of flown and nominal trajectory */
+    private final int[] flownChannels;
+    private final int[] nominalChannels;
+
+    /** Flown value minus nominal value of each compared channel at each sample */
+    private final float[][] deltas;
+
+    private final RangeSummary deviationSummary;
+
+    /** Summaries of deltas, created on first access */
+    private final RangeSummary[] deltaSummaries;
+
+    /**
+     * Constructor, computes the comparison
+     * @param nominal nominal trajectory
+     * @param flown flown trajectory
+     * @param startTime time of the first sample
+     * @param step time between two samples
+     * @param sampleCount amount of samples, at least 2
+     */
+    private TrajectoryComparison(Trajectory3D nominal, Trajectory3D flown, double startTime, double step, int sampleCount) {
+        this.nominal = nominal;
+        this.flown = flown;
+        this.startTime = startTime;
+        this.step = step;
+
+        HistoryChannels flownHistories = flown.getChannels();
+        HistoryChannels nominalHistories = nominal.getChannels();
+        List<Integer> common = new ArrayList<>();
+        for (int channel = 0; channel < flownHistories.size(); channel++) {
+            String name = flownHistories.getName(channel);
+            int nominalChannel = nominalHistories.indexOf(name);
+            if (nominalChannel >= 0 && flownHistories.get(channel).get() != null
+                    && nominalHistories.get(nominalChannel).get() != null) {
+                channelNames.add(name);
+                common.add(channel);
+                common.add(nominalChannel);
+            }
+        }
+        flownChannels = new int[channelNames.size()];
+        nominalChannels = new int[channelNames.size()];
+        deltas = new float[channelNames.size()][];
+        for (int channel = 0; channel < channelNames.size(); channel++) {
+            flownChannels[channel] = common.get(2 * channel);
+            nominalChannels[channel] = common.get(2 * channel + 1);
+            deltas[channel] = new float[sampleCount];
+        }
+        deltaSummaries = new RangeSummary[channelNames.size()];
+
+        deviations = new float[sampleCount];
+        computeInParallel(false, sampleCount);
+        vertexDeviations = new float[flown.getSmoothVertexCount()];
+        computeInParallel(true, vertexDeviations.length);
+        deviationSummary = new RangeSummary(deviations);
+    }
+
+    /**
+     * Compares two trajectories in time covered by both of them
+     * @param nominal nominal trajectory
+     * @param flown flown trajectory
+     * @return comparison, null if trajectories do not share any time
+     */
+    public static TrajectoryComparison compare(Trajectory3D nominal, Trajectory3D flown) {
+        float[] nominalTimes = nominal.getTimes();
+        float[] flownTimes = flown.getTimes();
+        double start = Math.max(nominalTimes[0], flownTimes[0]);
+        double end = Math.min(nominalTimes[nominalTimes.length - 1], flownTimes[flownTimes.length - 1]);
+        if (!(end > start)) {
+            LOGGER.log(Level.WARNING, "Trajectories NOT COMPARED. They do not share any time.");
+            return null;
+        }
+        int sampleCount = Math.max(2, Math.max(countTimes(nominalTimes, start, end), countTimes(flownTimes, start, end)));
+        long began = System.nanoTime();
+        TrajectoryComparison comparison = new TrajectoryComparison(nominal, flown, start, (end - start) / (sampleCount - 1), sampleCount);
+        LOGGER.log(Level.FINE, "Compared {0} samples in {1} ms",
+                new Object[]{ sampleCount, (System.nanoTime() - began) / 1000000 });
+        return comparison;
+    }
+
+    /**
+     * @param times non-decreasing times
+     * @return amount of times from interval [start,end]
+     */
+    private static int countTimes(float[] times, double start, double end) {
+        return countTimesBefore(times, end, true) - countTimesBefore(times, start, false);
+    }
+
+    /**
+     * Binary search in times
+     * @param times non-decreasing times
+     * @param time the time
+     * @param inclusive true to count times equal to the time too
+     * @return amount of times earlier than the time
+     */
+    private static int countTimesBefore(float[] times, double time, boolean inclusive) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time || (inclusive && times[middle] == time)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes all samples or deviations of all smooth vertices, long ranges are computed in parallel
+     * @param vertices true for deviations of smooth vertices, false for samples
+     * @param count amount of samples or smooth vertices
+     */
+    private void computeInParallel(boolean vertices, int count) {
+        if (count > COMPARING_TASK_SAMPLES) {
+            TaskPool.POOL.invoke(new ComparingTask(vertices, 0, count));
+        } else if (vertices) {
+            computeVertexDeviations(0, count);
+        } else {
+            computeSamples(0, count);
+        }
+    }
+
+    /**
+     * Computes range of samples or smooth vertices, splits it in halves until it is short enough
+     */
+    private class ComparingTask extends RecursiveAction {
+
+        private final boolean vertices;
+        private final int from;
+        private final int to;
+
+        ComparingTask(boolean vertices, int from, int to) {
+            this.vertices = vertices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > COMPARING_TASK_SAMPLES) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ComparingTask(vertices, from, middle), new ComparingTask(vertices, middle, to));
+            } else if (vertices) {
+                computeVertexDeviations(from, to);
+            } else {
+                computeSamples(from, to);
+            }
+        }
+    }
+
+    /**
+     * Computes deviation and deltas of range of samples
+     * @param from first sample
+     * @param to sample after the last one
+     */
+    private void computeSamples(int from, int to) {
+        float[] nominalTimes = nominal.getTimes();
+        float[] flownTimes = flown.getTimes();
+        int nominalCheckpoint = checkpointBefore(nominalTimes, timeOfSample(from));
+        int flownCheckpoint = checkpointBefore(flownTimes, timeOfSample(from));
+        Vector3 nominalVertex = new Vector3();
+        Vector3 flownVertex = new Vector3();
+        float[] nominalValues = new float[nominal.getChannels().size()];
+        float[] flownValues = new float[flown.getChannels().size()];
+        for (int sample = from; sample < to; sample++) {
+            double time = timeOfSample(sample);
+            nominalCheckpoint = advanceCheckpoint(nominalTimes, time, nominalCheckpoint);
+            flownCheckpoint = advanceCheckpoint(flownTimes, time, flownCheckpoint);
+            float nominalPosition = positionAtTime(nominalTimes, time, nominalCheckpoint);
+            float flownPosition = positionAtTime(flownTimes, time, flownCheckpoint);
+            nominal.vertexAt(nominalPosition, nominalVertex);
+            flown.vertexAt(flownPosition, flownVertex);
+            deviations[sample] = nominalVertex.dst(flownVertex) / Trajectory3D.SCALE;
+            if (deltas.length > 0) {
+                nominal.sampleAll(nominalPosition, nominalValues);
+                flown.sampleAll(flownPosition, flownValues);
+                for (int channel = 0; channel < deltas.length; channel++) {
+                    deltas[channel][sample] = flownValues[flownChannels[channel]] - nominalValues[nominalChannels[channel]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes deviation at range of smooth vertices of flown trajectory
+     * @param from first vertex
+     * @param to vertex after the last one
+     */
+    private void computeVertexDeviations(int from, int to) {
+        for (int vertex = from; vertex < to; vertex++) {
+            vertexDeviations[vertex] = deviationAt(flown.elapsedTimeAt(flown.positionOfSmoothVertex(vertex)));
+        }
+    }
+
+    /**
+     * Finds start of section of trajectory containing the time by binary search
+     * @param times non-decreasing times, at least 2
+     * @param time the time
+     * @return index of the last checkpoint not later than the time, from interval [0,times.length-2]
+     */
+    private static int checkpointBefore(float[] times, double time) {
+        return Math.max(0, Math.min(countTimesBefore(times, time, true) - 1, times.length - 2));
+    }
+
+    /**
+     * Finds start of section of trajectory containing the time by walking forward from earlier section
+     * @param times non-decreasing times, at least 2
+     * @param time the time, not earlier than checkpoint
+     * @param checkpoint start of section containing earlier time
+     * @return index of the last checkpoint not later than the time, from interval [0,times.length-2]
+     */
+    private static int advanceCheckpoint(float[] times, double time, int checkpoint) {
+        while (checkpoint < times.length - 2 && times[checkpoint + 1] <= time) {
+            checkpoint++;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Position at time inside section of trajectory, like {@link Trajectory3D#positionAtTime(float)}
+     * @param times times of trajectory
+     * @param time the time
+     * @param checkpoint start of section containing the time
+     * @return position from interval [0,1]
+     */
+    private static float positionAtTime(float[] times, double time, int checkpoint) {
+        float section = times[checkpoint + 1] - times[checkpoint];
+        double fraction = (section > 0) ? (time - times[checkpoint]) / section : 0;
+        fraction = Math.max(0, Math.min(1, fraction));
+        return (float) ((checkpoint + fraction) / (times.length - 1));
+    }
+
+    /**
+     * @param sample index of sample
+     * @return mission time of sample in seconds
+     */
+    public double timeOfSample(int sample) {
+        return startTime + sample * step;
+    }
+
+    /**
+     * @param time mission time in seconds
+     * @return index of the first sample not earlier than the time, amount of samples if there is none
+     */
+    public int firstSampleAt(double time) {
+        double sample = Math.ceil((time - startTime) / step);
+        return (int) Math.max(0, Math.min(sample, deviations.length));
+    }
+
+    /**
+     * @param time mission time in seconds
+     * @return index of sample after the last one not later than the time, 0 if there is none
+     */
+    public int endSampleAt(double time) {
+        double sample = Math.floor((time - startTime) / step) + 1;
+        return (int) Math.max(0, Math.min(sample, deviations.length));
+    }
+
+    /**
+     * Returns deviation at given time interpolated between samples
+     * @param time mission time in seconds
+     * @return distance between flown and nominal position in meters, NaN outside of compared time
+     */
+    public float deviationAt(float time) {
+        return valueAt(deviations, time);
+    }
+
+    /**
+     * Returns difference of history at given time interpolated between samples
+     * @param channel index of compared channel
+     * @param time mission time in seconds
+     * @return flown value minus nominal value, NaN outside of compared time
+     */
+    public float deltaAt(int channel, float time) {
+        return valueAt(deltas[channel], time);
+    }
+
+    private float valueAt(float[] samples, float time) {
+        double floatSample = (time - startTime) / step;
+        int last = samples.length - 1;
+        if (!(floatSample >= 0 && floatSample <= last)) {
+            return Float.NaN;
+        }
+        int sample = Math.min((int) floatSample, last - 1);
+        float fraction = (float) (floatSample - sample);
+        return samples[sample] + (samples[sample + 1] - samples[sample]) * fraction;
+    }
+
+    /**
+     * @param startTime mission time of window start in seconds
+     * @param endTime mission time of window end in seconds
+     * @return the biggest deviation in window in meters, NaN if window holds no sample
+     */
+    public float maxDeviation(double startTime, double endTime) {
+        return deviationSummary.max(firstSampleAt(startTime), endSampleAt(endTime));
+    }
+
+    /**
+     * @param startTime mission time of window start in seconds
+     * @param endTime mission time of window end in seconds
+     * @return mean deviation in window in meters, NaN if window holds no sample
+     */
+    public float meanDeviation(double startTime, double endTime) {
+        return deviationSummary.mean(firstSampleAt(startTime), endSampleAt(endTime));
+    }
+
+    /**
+     * @param startTime mission time of window start in seconds
+     * @param endTime mission time of window end in seconds
+     * @return root mean square of deviation in window in meters, NaN if window holds no sample
+     */
+    public float rmsDeviation(double startTime, double endTime) {
+        return deviationSummary.rms(firstSampleAt(startTime), endSampleAt(endTime));
+    }
+
+    /**
+     * @return summary of deviations by samples, see {@link #firstSampleAt(double)} and {@link #endSampleAt(double)}
+     */
+    public RangeSummary getDeviationSummary() {
+        return deviationSummary;
+    }
+
+    /**
+     * @param channel index of compared channel
+     * @return summary of deltas of channel by samples, created on first access
+     */
+    public synchronized RangeSummary getDeltaSummary(int channel) {
+        if (deltaSummaries[channel] == null) {
+            deltaSummaries[channel] = new RangeSummary(deltas[channel]);
+        }
+        return deltaSummaries[channel];
+    }
+
+    public Trajectory3D getNominal() {
+        return nominal;
+    }
+
+    public Trajectory3D getFlown() {
+        return flown;
+    }
+
+    /**
+     * @return mission time of the first sample in seconds
+     */
+    public double getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return mission time of the last sample in seconds
+     */
+    public double getEndTime() {
+        return timeOfSample(deviations.length - 1);
+    }
+
+    /**
+     * @return amount of samples
+     */
+    public int getSampleCount() {
+        return deviations.length;
+    }
+
+    /**
+     * @return deviation at each sample in meters, must not be modified
+     */
+    public float[] getDeviations() {
+        return deviations;
+    }
+
+    /**
+     * @return deviation at each smooth vertex of flown trajectory in meters, NaN where nominal
+     *         trajectory is missing, must not be modified
+     */
+    public float[] getVertexDeviations() {
+        return vertexDeviations;
+    }
+
+    /**
+     * @return amount of histories, which both trajectories have
+     */
+    public int getChannelCount() {
+        return channelNames.size();
+    }
+
+    /**
+     * @param channel index of compared channel
+     * @return name of channel
+     */
+    public String getChannelName(int channel) {
+        return channelNames.get(channel);
+    }
+
+    /**
+     * @param name name of history
+     * @return index of compared channel, -1 if both trajectories do not have it
+     */
+    public int indexOfChannel(String name) {
+        return channelNames.indexOf(name);
+    }
+
+    /**
+     * @param channel index of compared channel
+     * @return flown value minus nominal value at each sample, must not be modified
+     */
+    public float[] getDeltas(int channel) {
+        return deltas[channel];
+    }
+
+    /**
+     * @return size of samples and their summaries in bytes, without compared trajectories
+     */
+    public synchronized long getMemorySize() {
+        long size = 4L * (deviations.length + vertexDeviations.length) + deviationSummary.getMemorySize();
+        for (int channel = 0; channel < deltas.length; channel++) {
+            size += 4L * deltas[channel].length;
+            if (deltaSummaries[channel] != null) {
+                size += deltaSummaries[channel].getMemorySize();
+            }
+        }
+        return size;
+    }
+}
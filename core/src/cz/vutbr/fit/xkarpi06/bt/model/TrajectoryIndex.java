@@ -0,0 +1,387 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Bounding volume hierarchy over lines between smooth vertices of trajectory
+ *
+ * Trajectory is continuous, so lines following each other are close in space too. Every leaf
+ * holds LEAF_LINES consecutive lines, inner nodes are built bottom-up as complete binary tree
+ * stored in array, node i has children 2i and 2i+1, root is node 1. Queries descend only into
+ * boxes which can contain a better result, so they visit O(log n) nodes for usual trajectories.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+class TrajectoryIndex {
+
+    /** Amount of lines in one leaf */
+    private static final int LEAF_LINES = 8;
+
+    /** Values per box: min x,y,z, max x,y,z */
+    private static final int BOX_SIZE = 6;
+
+    private float[] vertices;
+    private int lineCount;
+
+    /** Amount of leaves, power of two, leaves without lines have empty box */
+    private int leafCount;
+
+    /** Bounding box of each node */
+    private float[] boxes;
+
+    /** Amount of nodes waiting in query at most, one for each level of tree and the last child */
+    private int stackSize;
+
+    /**
+     * Constructor, builds hierarchy
+     * @param vertices packed x,y,z triplets, must not be modified while index is used
+     * @param vertexCount amount of valid vertices at start of array, at least two
+     */
+    TrajectoryIndex(float[] vertices, int vertexCount) {
+        build(vertices, vertexCount);
+    }
+
+    /**
+     * Updates hierarchy after vertices changed from given one, usually after new vertices were appended.
+     * Only leaves with changed lines and their ancestors are computed again, whole hierarchy is built
+     * again only when it needs more leaves, which doubles their amount.
+     * @param vertices packed x,y,z triplets, the same as before up to firstVertex, must not be modified while index is used
+     * @param vertexCount amount of valid vertices at start of array
+     * @param firstVertex index of the first changed vertex
+     */
+    void update(float[] vertices, int vertexCount, int firstVertex) {
+        int newLineCount = vertexCount - 1;
+        if (newLineCount > leafCount * LEAF_LINES || newLineCount < lineCount) {
+            build(vertices, vertexCount);
+            return;
+        }
+        this.vertices = vertices;
+        this.lineCount = newLineCount;
+        // line before the first changed vertex ends in it
+        int firstLeaf = Math.max(firstVertex - 1, 0) / LEAF_LINES;
+        int endLeaf = (lineCount + LEAF_LINES - 1) / LEAF_LINES;
+        computeLeaves(firstLeaf, endLeaf);
+        int first = leafCount + firstLeaf;
+        int last = leafCount + endLeaf - 1;
+        while (first > 1) {
+            first /= 2;
+            last /= 2;
+            computeNodes(first, last + 1);
+        }
+    }
+
+    /**
+     * Builds the whole hierarchy
+     * @param vertices packed x,y,z triplets
+     * @param vertexCount amount of valid vertices at start of array, at least two
+     */
+    private void build(float[] vertices, int vertexCount) {
+        this.vertices = vertices;
+        this.lineCount = vertexCount - 1;
+        int leaves = 1;
+        while (leaves * LEAF_LINES < lineCount) {
+            leaves *= 2;
+        }
+        this.leafCount = leaves;
+        this.boxes = new float[2 * leafCount * BOX_SIZE];
+        this.stackSize = Integer.numberOfTrailingZeros(leafCount) + 2;
+        computeLeaves(0, leafCount);
+        computeNodes(1, leafCount);
+    }
+
+    /**
+     * Computes boxes of leaves from boxes of their lines
+     * @param from first leaf
+     * @param to leaf after the last one
+     */
+    private void computeLeaves(int from, int to) {
+        for (int leaf = from; leaf < to; leaf++) {
+            int box = (leafCount + leaf) * BOX_SIZE;
+            for (int i = 0; i < 3; i++) {
+                boxes[box + i] = Float.POSITIVE_INFINITY;
+                boxes[box + 3 + i] = Float.NEGATIVE_INFINITY;
+            }
+            int first = leaf * LEAF_LINES;
+            int end = Math.min(first + LEAF_LINES, lineCount);
+            for (int vertex = first; vertex <= end && first < lineCount; vertex++) {
+                int v = vertex * Trajectory3D.VERTEX_SIZE;
+                for (int i = 0; i < 3; i++) {
+                    boxes[box + i] = Math.min(boxes[box + i], vertices[v + i]);
+                    boxes[box + 3 + i] = Math.max(boxes[box + 3 + i], vertices[v + i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes boxes of inner nodes from boxes of their children, from the last node to the first one
+     * @param from first inner node
+     * @param to node after the last one
+     */
+    private void computeNodes(int from, int to) {
+        for (int node = to - 1; node >= from; node--) {
+            int box = node * BOX_SIZE;
+            int left = 2 * node * BOX_SIZE;
+            int right = left + BOX_SIZE;
+            for (int i = 0; i < 3; i++) {
+                boxes[box + i] = Math.min(boxes[left + i], boxes[right + i]);
+                boxes[box + 3 + i] = Math.max(boxes[left + 3 + i], boxes[right + 3 + i]);
+            }
+        }
+    }
+
+    /**
+     * Finds point of trajectory nearest to given point
+     * @return index of smooth vertex with decimal part between vertices
+     */
+    double nearest(float x, float y, float z) {
+        double best = -1;
+        float bestDistance2 = Float.POSITIVE_INFINITY;
+        int[] stack = new int[stackSize];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (boxDistance2(node, x, y, z) >= bestDistance2) {
+                continue;
+            }
+            if (node >= leafCount) {
+                int first = (node - leafCount) * LEAF_LINES;
+                int end = Math.min(first + LEAF_LINES, lineCount);
+                for (int line = first; line < end; line++) {
+                    float s = closestOnLine(line, x, y, z);
+                    float distance2 = distance2(line, s, x, y, z);
+                    if (distance2 < bestDistance2) {
+                        bestDistance2 = distance2;
+                        best = line + s;
+                    }
+                }
+            } else {
+                // nearer child is taken first
+                int left = 2 * node;
+                boolean leftFirst = boxDistance2(left, x, y, z) <= boxDistance2(left + 1, x, y, z);
+                stack[top++] = leftFirst ? left + 1 : left;
+                stack[top++] = leftFirst ? left : left + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the first point of trajectory along ray, which is closer to ray than tolerance
+     * growing with distance from origin of ray, like width of a pixel in perspective view
+     * @param origin origin of ray, x,y,z
+     * @param direction unit direction of ray, x,y,z
+     * @param slope allowed distance from ray per unit of distance along ray
+     * @return index of smooth vertex with decimal part between vertices, -1 if ray misses trajectory
+     */
+    double pick(float[] origin, float[] direction, float slope) {
+        double best = -1;
+        float bestAlong = Float.POSITIVE_INFINITY;
+        float[] closest = new float[2];
+        int[] stack = new int[stackSize];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (rayEntry(node, origin, direction, slope) >= bestAlong) {
+                continue;
+            }
+            if (node >= leafCount) {
+                int first = (node - leafCount) * LEAF_LINES;
+                int end = Math.min(first + LEAF_LINES, lineCount);
+                for (int line = first; line < end; line++) {
+                    closestToRay(line, origin, direction, closest);
+                    float along = closest[0];
+                    float s = closest[1];
+                    float distance2 = distance2(line, s, origin[0] + direction[0] * along,
+                            origin[1] + direction[1] * along, origin[2] + direction[2] * along);
+                    float tolerance = slope * along;
+                    if (distance2 <= tolerance * tolerance && along < bestAlong) {
+                        bestAlong = along;
+                        best = line + s;
+                    }
+                }
+            } else {
+                int left = 2 * node;
+                boolean leftFirst = rayEntry(left, origin, direction, slope) <= rayEntry(left + 1, origin, direction, slope);
+                stack[top++] = leftFirst ? left + 1 : left;
+                stack[top++] = leftFirst ? left : left + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds smooth vertices within radius from given point
+     * @param radius the radius
+     * @param out receives indices of the vertices in ascending order
+     */
+    void within(float x, float y, float z, float radius, IntArray out) {
+        float radius2 = radius * radius;
+        int[] stack = new int[stackSize];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (boxDistance2(node, x, y, z) > radius2) {
+                continue;
+            }
+            if (node >= leafCount) {
+                int first = (node - leafCount) * LEAF_LINES;
+                // every leaf reports starts of its lines, the last one reports the last vertex too
+                int end = Math.min(first + LEAF_LINES, lineCount);
+                if (end == lineCount) {
+                    end++;
+                }
+                for (int vertex = first; vertex < end; vertex++) {
+                    if (distance2(vertex, 0, x, y, z) <= radius2) {
+                        out.add(vertex);
+                    }
+                }
+            } else {
+                stack[top++] = 2 * node + 1;
+                stack[top++] = 2 * node;
+            }
+        }
+    }
+
+    /**
+     * @param rangeLines amount of lines in one range, power of two
+     * @return amount of ranges covering all lines
+     */
+    int rangeCount(int rangeLines) {
+        return (lineCount + rangeLines - 1) / rangeLines;
+    }
+
+    /**
+     * Measures distance of point from boxes of consecutive ranges of lines, box of range is box of node
+     * covering its lines, so it is read and not computed
+     * @param rangeLines amount of lines in one range, power of two
+     * @param distances receives distance from box of range i at index i, 0 inside, at least rangeCount long
+     */
+    void rangeDistances(int rangeLines, float x, float y, float z, float[] distances) {
+        int nodeLeaves = Math.max(rangeLines / LEAF_LINES, 1);
+        // nodes covering nodeLeaves leaves start at this index, only root if tree is smaller than range
+        int firstNode = Math.max(leafCount / nodeLeaves, 1);
+        int count = rangeCount(rangeLines);
+        for (int range = 0; range < count; range++) {
+            distances[range] = (float) Math.sqrt(boxDistance2(firstNode + range, x, y, z));
+        }
+    }
+
+    /**
+     * @return squared distance of point from box of node, 0 inside, infinity for empty box
+     */
+    private float boxDistance2(int node, float x, float y, float z) {
+        int box = node * BOX_SIZE;
+        if (boxes[box] > boxes[box + 3]) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float dx = Math.max(0, Math.max(boxes[box] - x, x - boxes[box + 3]));
+        float dy = Math.max(0, Math.max(boxes[box + 1] - y, y - boxes[box + 4]));
+        float dz = Math.max(0, Math.max(boxes[box + 2] - z, z - boxes[box + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Intersects ray with box of node enlarged by tolerance at the farthest corner of box
+     * @return distance along ray, where it enters the box, 0 if origin is inside, infinity if it misses
+     */
+    private float rayEntry(int node, float[] origin, float[] direction, float slope) {
+        int box = node * BOX_SIZE;
+        if (boxes[box] > boxes[box + 3]) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float farthest2 = 0;
+        for (int i = 0; i < 3; i++) {
+            float d = Math.max(Math.abs(boxes[box + i] - origin[i]), Math.abs(boxes[box + 3 + i] - origin[i]));
+            farthest2 += d * d;
+        }
+        float margin = slope * (float) Math.sqrt(farthest2);
+        float entry = 0;
+        float exit = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < 3; i++) {
+            float min = boxes[box + i] - margin;
+            float max = boxes[box + 3 + i] + margin;
+            if (direction[i] == 0) {
+                if (origin[i] < min || origin[i] > max) {
+                    return Float.POSITIVE_INFINITY;
+                }
+            } else {
+                float t1 = (min - origin[i]) / direction[i];
+                float t2 = (max - origin[i]) / direction[i];
+                entry = Math.max(entry, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
+        }
+        return (entry <= exit) ? entry : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param line index of line, it starts in vertex with the same index
+     * @return parameter from [0,1] of point of line nearest to given point
+     */
+    private float closestOnLine(int line, float x, float y, float z) {
+        int a = line * Trajectory3D.VERTEX_SIZE;
+        int b = a + Trajectory3D.VERTEX_SIZE;
+        float vx = vertices[b] - vertices[a];
+        float vy = vertices[b + 1] - vertices[a + 1];
+        float vz = vertices[b + 2] - vertices[a + 2];
+        float length2 = vx * vx + vy * vy + vz * vz;
+        if (length2 == 0) {
+            return 0;
+        }
+        float s = ((x - vertices[a]) * vx + (y - vertices[a + 1]) * vy + (z - vertices[a + 2]) * vz) / length2;
+        return Math.max(0, Math.min(1, s));
+    }
+
+    /**
+     * Finds points of ray and line nearest to each other
+     * @param line index of line
+     * @param closest receives distance along ray and parameter from [0,1] of point of line
+     */
+    private void closestToRay(int line, float[] origin, float[] direction, float[] closest) {
+        int a = line * Trajectory3D.VERTEX_SIZE;
+        int b = a + Trajectory3D.VERTEX_SIZE;
+        float vx = vertices[b] - vertices[a];
+        float vy = vertices[b + 1] - vertices[a + 1];
+        float vz = vertices[b + 2] - vertices[a + 2];
+        float wx = origin[0] - vertices[a];
+        float wy = origin[1] - vertices[a + 1];
+        float wz = origin[2] - vertices[a + 2];
+        float dv = direction[0] * vx + direction[1] * vy + direction[2] * vz;
+        float vv = vx * vx + vy * vy + vz * vz;
+        float dw = direction[0] * wx + direction[1] * wy + direction[2] * wz;
+        float vw = vx * wx + vy * wy + vz * wz;
+        float denominator = vv - dv * dv;     // direction is unit vector
+        float s = (denominator > 1e-12f * vv) ? Math.max(0, Math.min(1, (vw - dv * dw) / denominator)) : 0;
+        float along = dv * s - dw;
+        if (along < 0) {
+            along = 0;
+            s = (vv > 0) ? Math.max(0, Math.min(1, vw / vv)) : 0;
+        }
+        closest[0] = along;
+        closest[1] = s;
+    }
+
+    /**
+     * @return squared distance of point from point of line with parameter s
+     */
+    private float distance2(int line, float s, float x, float y, float z) {
+        int a = line * Trajectory3D.VERTEX_SIZE;
+        int b = Math.min(a + Trajectory3D.VERTEX_SIZE, lineCount * Trajectory3D.VERTEX_SIZE);
+        float dx = vertices[a] + (vertices[b] - vertices[a]) * s - x;
+        float dy = vertices[a + 1] + (vertices[b + 1] - vertices[a + 1]) * s - y;
+        float dz = vertices[a + 2] + (vertices[b + 2] - vertices[a + 2]) * s - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return size of boxes in bytes
+     */
+    long getMemorySize() {
+        return 4L * boxes.length;
+    }
+}
@@ -0,0 +1,62 @@
+package cz.vutbr.fit.xkarpi06.bt.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Samples appended to the end of existing trajectory, any of the arrays can be empty
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectorySamples {
+
+    /** new vertices in cartesian form as packed x,y,z triplets, not scaled */
+    public final float[] vertices;
+
+    /** new discrete times (seconds) */
+    public final float[] times;
+
+    /** new pitch state-points (radians) */
+    public final float[] pitch;
+
+    /** new mass state-points (kilograms) */
+    public final float[] mass;
+
+    /** new vertical velocity state-points (m/s) */
+    public final float[] vr;
+
+    /** new horizontal velocity state-points (m/s) */
+    public final float[] vth;
+
+    /** new state-points of other histories by channel name */
+    public final Map<String, float[]> channels;
+
+    public TrajectorySamples(float[] vertices, float[] times, float[] pitch, float[] mass, float[] vr, float[] vth) {
+        this(vertices, times, pitch, mass, vr, vth, Collections.<String, float[]>emptyMap());
+    }
+
+    public TrajectorySamples(float[] vertices, float[] times, float[] pitch, float[] mass, float[] vr, float[] vth,
+                             Map<String, float[]> channels) {
+        this.channels = channels;
+        this.vertices = vertices;
+        this.times = times;
+        this.pitch = pitch;
+        this.mass = mass;
+        this.vr = vr;
+        this.vth = vth;
+    }
+
+    /**
+     * @return true if there is not any new sample
+     */
+    public boolean isEmpty() {
+        for (float[] channel : channels.values()) {
+            if (channel.length > 0) {
+                return false;
+            }
+        }
+        return vertices.length == 0 && times.length == 0 && pitch.length == 0
+                && mass.length == 0 && vr.length == 0 && vth.length == 0;
+    }
+}
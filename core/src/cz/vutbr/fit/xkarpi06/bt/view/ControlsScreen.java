@@ -57,6 +57,7 @@ public class ControlsScreen implements Screen {
                 {"space bar","pause/play simulation"},
                 {"r","change simulation flow backwards/forwards"},
                 {"left mouse","change camera angle"},
+                {"left click","move ship to clicked trajectory point"},
                 {"mouse scroll","zoom in/out"},
         };
 
@@ -10,11 +10,27 @@ import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.kotcrab.vis.ui.widget.VisLabel;
 import cz.vutbr.fit.xkarpi06.bt.MoonLanding;
+import cz.vutbr.fit.xkarpi06.bt.input.load.LoadingProgress;
 import cz.vutbr.fit.xkarpi06.bt.input.load.ProjectFiles;
 import cz.vutbr.fit.xkarpi06.bt.input.load.Trajectory3DLoader;
+import cz.vutbr.fit.xkarpi06.bt.input.load.TrajectoryFollower;
+import cz.vutbr.fit.xkarpi06.bt.input.load.TrajectoryLruCache;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectoryComparison;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Loading screen view, displayed when loading assets
+ *
+ * Trajectory is loaded on its own thread at the same time as assets, render thread
+ * only shows progress and takes the trajectory when it is ready. Nominal trajectory,
+ * if there is one, is loaded and compared with the loaded one afterwards, because loader
+ * loads one directory at a time. Model of trajectory is built later by {@link VisualizationScreen}
+ * on render thread.
  * @author xkarpi06
  * created: 03-05-2020
  * updated:
@@ -27,7 +43,24 @@ public class LoadingScreen implements Screen {
     private VisLabel loadingLabel;
 
     private LoadingPhase loadingPhase;
-    private float loadingIterator = 0;
+
+    /** Loading of trajectory, null if the loaded one is reused */
+    private FutureTask<Trajectory3D> trajectoryLoading;
+
+    /** Fingerprint of loaded directory taken before loading, null if trajectory is not cached */
+    private String loadingFingerprint;
+
+    /** Progress of trajectory loading */
+    private final LoadingProgress progress = new LoadingProgress();
+
+    /** Loading of nominal trajectory and comparison, null if there is no comparison or the last one is reused */
+    private FutureTask<TrajectoryComparison> comparisonLoading;
+
+    /** Fingerprint of nominal directory taken before loading */
+    private String nominalFingerprint;
+
+    /** Progress of nominal trajectory loading */
+    private final LoadingProgress nominalProgress = new LoadingProgress();
 
     public LoadingScreen(final MoonLanding moonLanding) {
         game = moonLanding;
@@ -52,9 +85,128 @@ public class LoadingScreen implements Screen {
         } catch (GdxRuntimeException e) {
             game.assets.load(ProjectFiles.SHIP_SOURCE_FILE, Model.class);
         }
+        startTrajectoryLoading();
         loadingPhase = LoadingPhase.ASSETS;
     }
 
+    /**
+     * Starts loading of trajectory in other thread, if it has to be loaded
+     */
+    private void startTrajectoryLoading() {
+        final String trajectoryDir = game.trajectoryDir;
+        if (game.followTrajectory) {   // always reload, files may have grown since last time
+            final TrajectoryFollower follower = new TrajectoryFollower(trajectoryDir, TrajectoryFollower.DEFAULT_INTERVAL, game.smoothing);
+            game.follower = follower;
+            trajectoryLoading = new FutureTask<>(new Callable<Trajectory3D>() {
+                @Override
+                public Trajectory3D call() {
+                    return follower.load(progress);
+                }
+            });
+        } else if (game.trajectory == null || game.trajectoryDirWasChanged) {
+            final Smoothing smoothing = game.smoothing;
+            loadingFingerprint = TrajectoryLruCache.fingerprint(trajectoryDir, game.smoothing);
+            Trajectory3D cached = game.trajectoryCache.get(trajectoryDir, loadingFingerprint);
+            if (cached != null) {
+                game.setTrajectory(cached);
+                game.trajectoryDirWasChanged = false;
+                return;
+            }
+            trajectoryLoading = new FutureTask<>(new Callable<Trajectory3D>() {
+                @Override
+                public Trajectory3D call() {
+                    return Trajectory3DLoader.load(trajectoryDir, progress, smoothing);
+                }
+            });
+        }
+        if (trajectoryLoading != null) {
+            Thread thread = new Thread(trajectoryLoading, "trajectory-loading");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Takes loaded trajectory, goes back to main menu if loading failed
+     * @return true if trajectory is ready
+     */
+    private boolean finishTrajectoryLoading() {
+        if (trajectoryLoading != null) {
+            Trajectory3D loaded = null;
+            try {
+                loaded = trajectoryLoading.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+            if (loaded != null && !game.followTrajectory) {   // followed trajectory changes, it is not cached
+                game.trajectoryCache.put(game.trajectoryDir, loadingFingerprint, loaded);
+            }
+            game.setTrajectory(loaded);
+            game.trajectoryDirWasChanged = game.followTrajectory;  // followed trajectory is not the one in cache
+        }
+        if (game.trajectory == null) {  // failed to load trajectory
+            game.follower = null;
+            game.errMsg = "Could not load trajectory.";
+            game.setScreen(new MainMenuScreen(game));
+            dispose();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts loading of nominal trajectory and its comparison with loaded trajectory in other thread,
+     * if comparison is requested
+     */
+    private void startComparison() {
+        final String nominalDir = game.nominalDir;
+        if (nominalDir == null || nominalDir.isEmpty() || game.followTrajectory) {  // followed trajectory is not compared, it changes
+            game.setComparison(null);
+            return;
+        }
+        final Trajectory3D flown = game.trajectory;
+        final Smoothing smoothing = game.smoothing;
+        nominalFingerprint = TrajectoryLruCache.fingerprint(nominalDir, smoothing);
+        final Trajectory3D cached = game.trajectoryCache.get(nominalDir, nominalFingerprint);
+        if (cached != null && game.comparison != null
+                && game.comparison.getFlown() == flown && game.comparison.getNominal() == cached) {
+            return;     // nothing has changed since last comparison
+        }
+        comparisonLoading = new FutureTask<>(new Callable<TrajectoryComparison>() {
+            @Override
+            public TrajectoryComparison call() {
+                Trajectory3D nominal = (cached != null) ? cached : Trajectory3DLoader.load(nominalDir, nominalProgress, smoothing);
+                return (nominal == null) ? null : TrajectoryComparison.compare(nominal, flown);
+            }
+        });
+        Thread thread = new Thread(comparisonLoading, "comparison-loading");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Takes comparison of trajectories, trajectory is shown without comparison if it failed
+     */
+    private void finishComparison() {
+        if (comparisonLoading == null) {
+            return;
+        }
+        TrajectoryComparison loaded = null;
+        try {
+            loaded = comparisonLoading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        if (loaded != null) {
+            game.trajectoryCache.put(game.nominalDir, nominalFingerprint, loaded.getNominal());
+        }
+        game.setComparison(loaded);
+    }
+
     @Override
     public void show() {
 
@@ -66,24 +218,25 @@ public class LoadingScreen implements Screen {
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
         camera.update();
-        drawLoading(delta);
+        drawLoading();
 
         switch (loadingPhase) {
             case TRAJECTORY:
-                if (game.trajectory == null || game.trajectoryDirWasChanged) {
-                    game.setTrajectory(Trajectory3DLoader.load(game.trajectoryDir));
-                    game.trajectoryDirWasChanged = false;
+                if (trajectoryLoading == null || trajectoryLoading.isDone()) {
+                    if (finishTrajectoryLoading()) {
+                        startComparison();
+                        loadingPhase = LoadingPhase.COMPARISON;
+                    }
                 }
-                if (game.trajectory == null) {  // failed to load trajectory
-                    game.errMsg = "Could not load trajectory.";
-                    game.setScreen(new MainMenuScreen(game));
-                    dispose();
+                break;
+            case COMPARISON:
+                if (comparisonLoading == null || comparisonLoading.isDone()) {
+                    finishComparison();
+                    loadingPhase = LoadingPhase.FINISHED;
                 }
-                loadingPhase = LoadingPhase.FINISHED;
                 break;
             case ASSETS:
                 if (game.assets.update()) {
-//                    loadTrajectoryInOtherThread();
                     loadingPhase = LoadingPhase.TRAJECTORY;
                 }
                 break;
@@ -98,43 +251,49 @@ public class LoadingScreen implements Screen {
 
     /**
      * Draws loading string onto screen.
-     * @param delta time delta
      */
-    private void drawLoading(float delta) {
-        loadingLabel.setText(getLoadingString(delta));
+    private void drawLoading() {
+        loadingLabel.setText(getLoadingString());
         stage.act();
         stage.draw();
     }
 
     /**
-     * Determines loading string based on loading phase
-     * @param delta time delta
+     * Determines loading string based on loading phase and progress
      * @return string
      */
-    private String getLoadingString(float delta) {
-        String loadingStr;
-        switch (loadingPhase) {
-            case START:
-                loadingStr = "Loading is starting";
-                break;
-            case TRAJECTORY:
-                loadingStr = "Loading trajectory";
-                break;
-            case ASSETS:
-                loadingStr = "Loading assets";
-                break;
-            case FINISHED:
-                loadingStr = "Starting application";
-                break;
-            default:
-                loadingStr = "";
-                break;
+    private String getLoadingString() {
+        if (loadingPhase == LoadingPhase.START || loadingPhase == LoadingPhase.FINISHED) {
+            return "Starting application";
+        }
+        StringBuilder loadingStr = new StringBuilder();
+        loadingStr.append(String.format("Loading assets %3d %%\n", percent(game.assets.getProgress())));
+        loadingStr.append(String.format("Loading trajectory %3d %%", percent(progress.getFraction())));
+        appendFiles(loadingStr, progress);
+        if (loadingPhase == LoadingPhase.COMPARISON && comparisonLoading != null) {
+            loadingStr.append(String.format("\nLoading nominal trajectory %3d %%", percent(nominalProgress.getFraction())));
+            appendFiles(loadingStr, nominalProgress);
         }
-        loadingIterator += 2*delta;
-        if ((int) loadingIterator % 3 == 0) { loadingStr += "."; }
-        else if ((int) loadingIterator % 3 == 1) { loadingStr += ".."; }
-        else if ((int) loadingIterator % 3 == 2) { loadingStr += "..."; }
-        return loadingStr;
+        return loadingStr.toString();
+    }
+
+    /**
+     * Appends progress of each loaded file on its own line
+     * @param loadingStr loading string
+     * @param progress progress of loading
+     */
+    private static void appendFiles(StringBuilder loadingStr, LoadingProgress progress) {
+        for (String fileName : progress.getFileNames()) {
+            loadingStr.append(String.format("\n    %s %3d %%", fileName, percent(progress.getFraction(fileName))));
+            long lines = progress.getLines(fileName);
+            if (lines > 0) {    // lines are not counted when trajectory is read from cache
+                loadingStr.append(String.format(", %d lines", lines));
+            }
+        }
+    }
+
+    private static int percent(float fraction) {
+        return (int) (100 * fraction);
     }
 
     @Override
@@ -168,6 +327,7 @@ public class LoadingScreen implements Screen {
     public enum LoadingPhase {
         START,
         TRAJECTORY,
+        COMPARISON,
         ASSETS,
         FINISHED
     }
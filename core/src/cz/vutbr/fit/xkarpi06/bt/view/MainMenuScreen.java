@@ -12,6 +12,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
+import com.kotcrab.vis.ui.widget.VisCheckBox;
 import com.kotcrab.vis.ui.widget.VisLabel;
 import com.kotcrab.vis.ui.widget.VisTextButton;
 import com.kotcrab.vis.ui.widget.VisTextField;
@@ -19,6 +20,8 @@ import com.kotcrab.vis.ui.widget.file.FileChooser;
 import com.kotcrab.vis.ui.widget.file.SingleFileChooserListener;
 import cz.vutbr.fit.xkarpi06.bt.MoonLanding;
 import cz.vutbr.fit.xkarpi06.bt.input.load.ProjectFiles;
+import cz.vutbr.fit.xkarpi06.bt.input.load.Trajectory3DLoader;
+import cz.vutbr.fit.xkarpi06.bt.model.Smoothing;
 
 import java.io.File;
 
@@ -36,6 +39,9 @@ public class MainMenuScreen implements Screen {
     Table dirSelect;
     VisLabel errLine;
     VisTextField dirTextField;
+    VisTextField nominalDirTextField;
+    VisCheckBox followCheckBox;
+    VisCheckBox adaptiveCheckBox;
 
     /* disposables */
     private Stage stage;
@@ -148,29 +154,56 @@ public class MainMenuScreen implements Screen {
 
         dirTextField = new VisTextField();
         dirTextField.setText(game.trajectoryDir);
-        game.fileChooser.setListener(new SingleFileChooserListener() {
-            @Override
-            protected void selected(FileHandle file) {
-                dirTextField.setText(file.file().getAbsolutePath());
-            }
-        });
-        VisTextButton selectButton = new VisTextButton("...");
-        selectButton.addListener(new ClickListener() {
-            @Override
-            public void clicked(InputEvent event, float x, float y) {
-                stage.addActor(game.fileChooser.fadeIn());
-            }
-        });
+        VisTextButton selectButton = createSelectButton(dirTextField);
         dirSelect.add(dirLabel).colspan(2).padBottom(5);
         dirSelect.row();
         dirSelect.add(dirTextField).width(stage.getWidth()*0.7f);
         dirSelect.add(selectButton).padLeft(5);
+        dirSelect.row();
+        VisLabel nominalDirLabel = new VisLabel("Compare with nominal trajectory from: (optional)");
+        nominalDirTextField = new VisTextField();
+        nominalDirTextField.setText(game.nominalDir);
+        VisTextButton nominalSelectButton = createSelectButton(nominalDirTextField);
+        dirSelect.add(nominalDirLabel).colspan(2).padTop(10).padBottom(5);
+        dirSelect.row();
+        dirSelect.add(nominalDirTextField).width(stage.getWidth()*0.7f);
+        dirSelect.add(nominalSelectButton).padLeft(5);
+        dirSelect.row();
+        followCheckBox = new VisCheckBox("Follow data appended to trajectory files");
+        followCheckBox.setChecked(game.followTrajectory);
+        dirSelect.add(followCheckBox).colspan(2).left().padTop(5);
+        dirSelect.row();
+        adaptiveCheckBox = new VisCheckBox("Adaptive trajectory smoothing");
+        adaptiveCheckBox.setChecked(game.smoothing.isAdaptive());
+        dirSelect.add(adaptiveCheckBox).colspan(2).left().padTop(5);
 
         showErrors();
 
         return dirSelect;
     }
 
+    /**
+     * Creates button opening file chooser, which writes selected directory to text field
+     * @param textField the text field
+     * @return the button
+     */
+    private VisTextButton createSelectButton(final VisTextField textField) {
+        VisTextButton selectButton = new VisTextButton("...");
+        selectButton.addListener(new ClickListener() {
+            @Override
+            public void clicked(InputEvent event, float x, float y) {
+                game.fileChooser.setListener(new SingleFileChooserListener() {
+                    @Override
+                    protected void selected(FileHandle file) {
+                        textField.setText(file.file().getAbsolutePath());
+                    }
+                });
+                stage.addActor(game.fileChooser.fadeIn());
+            }
+        });
+        return selectButton;
+    }
+
     /**
      * Checks if trajectory dir was changed since last time
      * @return true if app dir is set, false if no dir is set
@@ -180,8 +213,17 @@ public class MainMenuScreen implements Screen {
             game.trajectoryDir = dirTextField.getText();
             game.trajectoryDirWasChanged = true;
         }
+        game.nominalDir = nominalDirTextField.getText().trim();
+        game.followTrajectory = followCheckBox.isChecked();
+        Smoothing smoothing = adaptiveCheckBox.isChecked()
+                ? Trajectory3DLoader.ADAPTIVE_SMOOTHING : Trajectory3DLoader.DEFAULT_SMOOTHING;
+        if (!smoothing.equals(game.smoothing)) {
+            game.smoothing = smoothing;
+            game.trajectoryDirWasChanged = true;
+        }
 
-        return game.trajectoryDir == null || new File(game.trajectoryDir).isDirectory();
+        return (game.trajectoryDir == null || new File(game.trajectoryDir).isDirectory())
+                && (game.nominalDir.isEmpty() || new File(game.nominalDir).isDirectory());
     }
 
     /**
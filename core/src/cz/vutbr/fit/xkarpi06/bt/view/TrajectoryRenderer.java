@@ -0,0 +1,230 @@
+package cz.vutbr.fit.xkarpi06.bt.view;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+
+import java.util.Arrays;
+
+/**
+ * Draws trajectory model in levels of detail chosen by distance of camera from trajectory
+ *
+ * Trajectory is split into ranges of FAR_RANGE_LINES lines, each range is drawn in the coarsest
+ * level, whose tolerance is smaller than MAX_SCREEN_ERROR pixels at distance of camera from the range,
+ * but never in full resolution. Part of trajectory around ship is drawn in full resolution, it reaches
+ * as far along trajectory as camera is from ship, at most NEAR_FIELD_VERTICES vertices to each side.
+ * Neighbouring ranges of the same level are drawn together. Every coarser level keeps only vertices
+ * of finer levels, so ends of parts are moved to vertices of the coarser neighbour and lines of both join.
+ * @author xkarpi06
+ * created: 18-10-2026, xkarpi06
+ * updated:
+ */
+public class TrajectoryRenderer implements RenderableProvider {
+
+    /** Biggest allowed distance between drawn and full resolution trajectory in pixels */
+    public static final float MAX_SCREEN_ERROR = 1f;
+
+    /** Most vertices drawn in full resolution to each side of ship */
+    public static final int NEAR_FIELD_VERTICES = 512;
+
+    /** Amount of lines of trajectory with one level of detail outside of near field, power of two */
+    public static final int FAR_RANGE_LINES = 4096;
+
+    /** Placement of trajectory in scene */
+    public final Matrix4 transform = new Matrix4();
+
+    private final Trajectory3D trajectory;
+
+    /** Units of scene per meter */
+    private final float sceneScale;
+
+    /** Camera in coordinates of trajectory */
+    private final Vector3 cameraPosition = new Vector3();
+    private final Matrix4 inverseTransform = new Matrix4();
+
+    /** Distance of camera from each range of trajectory */
+    private float[] rangeDistances = new float[0];
+
+    /** First smooth vertex of each drawn part followed by the last smooth vertex, level of detail of each part */
+    private final IntArray partStarts = new IntArray();
+    private final IntArray partLevels = new IntArray();
+
+    /** Ends of parts as they were before moving to vertices of levels */
+    private final IntArray wantedStarts = new IntArray();
+
+    /**
+     * Constructor, builds model of trajectory
+     * @param trajectory the trajectory
+     * @param sceneScale units of scene per meter
+     */
+    public TrajectoryRenderer(Trajectory3D trajectory, float sceneScale) {
+        this.trajectory = trajectory;
+        this.sceneScale = sceneScale;
+        trajectory.buildModel();
+    }
+
+    /**
+     * Chooses levels of detail and near field for next frame
+     * @param cam camera, ship is at origin of scene
+     * @param shipPosition position of ship in trajectory
+     * @param screenHeight height of screen in pixels
+     */
+    public void update(PerspectiveCamera cam, float shipPosition, int screenHeight) {
+        // size of one pixel in scene units at unit distance from camera
+        float pixelSize = 2 * (float) Math.tan(cam.fieldOfView * MathUtils.degreesToRadians / 2) / Math.max(screenHeight, 1);
+        // trajectory is moved in scene, so that ship stays at origin
+        cameraPosition.set(cam.position).mul(inverseTransform.set(transform).inv());
+        int rangeCount = trajectory.getRangeCount(FAR_RANGE_LINES);
+        if (rangeDistances.length < rangeCount) {
+            rangeDistances = new float[rangeCount];
+        }
+        trajectory.rangeDistances(cameraPosition, FAR_RANGE_LINES, rangeDistances);
+
+        int lastVertex = trajectory.getSmoothVertexCount() - 1;
+        int shipVertex = trajectory.smoothVertexAt(shipPosition);
+        float shipDistance = trajectory.distanceAt(shipPosition);
+        float nearDistance = cam.position.len() / sceneScale;
+        int nearFirst = Math.max(trajectory.smoothVertexAt(trajectory.positionAtDistance(shipDistance - nearDistance)),
+                Math.max(shipVertex - NEAR_FIELD_VERTICES, 0));
+        int nearLast = Math.min(trajectory.smoothVertexAt(trajectory.positionAtDistance(shipDistance + nearDistance)) + 1,
+                Math.min(shipVertex + NEAR_FIELD_VERTICES, lastVertex));
+
+        wantedStarts.clear();
+        partLevels.clear();
+        for (int range = 0; range < rangeCount && range * FAR_RANGE_LINES < nearFirst; range++) {
+            addPart(range * FAR_RANGE_LINES, levelAt(rangeDistances[range] * pixelSize));
+        }
+        addPart(nearFirst, 0);
+        for (int range = nearLast / FAR_RANGE_LINES; range < rangeCount && nearLast < lastVertex; range++) {
+            addPart(Math.max(range * FAR_RANGE_LINES, nearLast), levelAt(rangeDistances[range] * pixelSize));
+        }
+        wantedStarts.add(lastVertex);
+        joinParts();
+    }
+
+    /**
+     * @param pixelSize size of one pixel in scene units at distance of drawn geometry
+     * @return the coarsest level of detail with error within MAX_SCREEN_ERROR pixels, at least level 1
+     */
+    private int levelAt(float pixelSize) {
+        for (int level = trajectory.getLevelCount() - 1; level > 1; level--) {
+            if (Trajectory3D.LOD_TOLERANCES[level - 1] <= MAX_SCREEN_ERROR * pixelSize) {
+                return level;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Adds part drawn to the last vertex or to start of next part, neighbouring parts of the same level are joined
+     * @param start first smooth vertex of part
+     * @param level level of detail of part
+     */
+    private void addPart(int start, int level) {
+        if (partLevels.size > 0 && partLevels.peek() == level) {
+            return;
+        }
+        wantedStarts.add(start);
+        partLevels.add(level);
+    }
+
+    /**
+     * Moves starts of parts to vertices of both neighbouring levels, start after near field is moved forward,
+     * other starts backward. Parts, which would end before their start, are left out.
+     */
+    private void joinParts() {
+        boolean joined = false;
+        while (!joined) {
+            partStarts.clear();
+            partStarts.add(wantedStarts.first());
+            joined = true;
+            for (int part = 1; part < partLevels.size && joined; part++) {
+                int level = Math.max(partLevels.get(part - 1), partLevels.get(part));
+                int[] kept = trajectory.getLevelVertices(level);
+                int keptCount = trajectory.getLevelVertexCount(level);
+                int start = wantedStarts.get(part);
+                if (partLevels.get(part - 1) == 0) {
+                    start = kept[Math.min(floorIndex(kept, keptCount, start - 1) + 1, keptCount - 1)];
+                } else {
+                    start = kept[floorIndex(kept, keptCount, start)];
+                }
+                if (start < partStarts.peek()) {
+                    // previous part is left out, its neighbours join
+                    wantedStarts.removeIndex(part);
+                    partLevels.removeIndex(part - 1);
+                    if (part - 1 > 0 && partLevels.get(part - 2) == partLevels.get(part - 1)) {
+                        wantedStarts.removeIndex(part - 1);
+                        partLevels.removeIndex(part - 1);
+                    }
+                    joined = false;
+                } else {
+                    partStarts.add(start);
+                }
+            }
+        }
+        partStarts.add(wantedStarts.peek());
+    }
+
+    @Override
+    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool) {
+        Model model = trajectory.getModel();
+        if (model == null) {
+            return;
+        }
+        for (int part = 0; part < partLevels.size; part++) {
+            int level = partLevels.get(part);
+            int first = partStarts.get(part);
+            int end = partStarts.get(part + 1);
+            if (level > 0) {
+                int[] kept = trajectory.getLevelVertices(level);
+                int keptCount = trajectory.getLevelVertexCount(level);
+                first = Arrays.binarySearch(kept, 0, keptCount, first);
+                end = Arrays.binarySearch(kept, 0, keptCount, end);
+            }
+            addLines(model, level, first, end, renderables, pool);
+        }
+    }
+    /**
+     * Adds renderable for range of lines of level, which are drawn as one line strip
+     * @param model trajectory model
+     * @param level level of detail
+     * @param first first line of level, line i starts in i-th vertex of level
+     * @param end line after the last one
+     */
+    private void addLines(Model model, int level, int first, int end, Array<Renderable> renderables, Pool<Renderable> pool) {
+        NodePart nodePart = model.nodes.get(level).parts.get(0);
+        int to = Math.min(end, nodePart.meshPart.size - 1);
+        if (first < to) {
+            Renderable renderable = pool.obtain();
+            renderable.meshPart.set(nodePart.meshPart.id, nodePart.meshPart.mesh,
+                    nodePart.meshPart.offset + first, to - first + 1, nodePart.meshPart.primitiveType);
+            renderable.material = nodePart.material;
+            renderable.worldTransform.set(transform);
+            renderable.environment = null;
+            renderable.bones = null;
+            renderable.shader = null;
+            renderable.userData = null;
+            renderables.add(renderable);
+        }
+    }
+
+    /**
+     * @param sorted ascending values
+     * @param count amount of valid values at start of array
+     * @param value searched value, at least the first one
+     * @return index of the last value, which is not bigger than searched one
+     */
+    private static int floorIndex(int[] sorted, int count, int value) {
+        int index = Arrays.binarySearch(sorted, 0, count, value);
+        return (index >= 0) ? index : -index - 2;
+    }
+}
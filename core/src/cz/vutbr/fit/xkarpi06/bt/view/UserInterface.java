@@ -5,13 +5,14 @@ import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.*;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.scenes.scene2d.utils.DragListener;
+import com.badlogic.gdx.utils.StringBuilder;
 import com.kotcrab.vis.ui.widget.VisLabel;
 import com.kotcrab.vis.ui.widget.VisSlider;
 import com.kotcrab.vis.ui.widget.VisTextButton;
+import cz.vutbr.fit.xkarpi06.bt.model.HistoryChannels;
 import cz.vutbr.fit.xkarpi06.bt.model.Simulation;
-
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectoryComparison;
 
 /**
  * Displays interactive layer on top of Visualization screen
@@ -32,11 +33,26 @@ public class UserInterface {
     // state labels
     private VisLabel altitudeLabel;
     private VisLabel distanceLabel;
+    private VisLabel flownLabel;
     private VisLabel pitchLabel;
     private VisLabel elapsedTimeLabel;
     private VisLabel massLabel;
     private VisLabel verticalVelLabel;
     private VisLabel horizontalVelLabel;
+    private VisLabel deviationLabel;
+    private VisLabel deviationWindowLabel;
+    private Table stateVariables;
+
+    /** Length of time window before current time summarized by deviation window label */
+    private static final float DEVIATION_WINDOW = 60f;    // (seconds)
+    private static final String DEVIATION_WINDOW_PREFIX = "Dev-max " + (int) DEVIATION_WINDOW + " s: ";
+
+    /** labels of other histories by channel index, null for known histories */
+    private VisLabel[] channelLabels = new VisLabel[0];
+    private String[] channelPrefixes = new String[0];
+
+    /** values of all histories at current position by channel index */
+    private float[] channelValues = new float[0];
 
     // ui elements
     private VisTextButton pauseButton;
@@ -51,7 +67,7 @@ public class UserInterface {
 
     // other variables
     private boolean simWasRunningBeforeSliderWasDragged = true;
-    DateTimeFormatter elapsedTimeFormat = DateTimeFormatter.ofPattern("H:mm:ss");
+    private final StringBuilder labelText = new StringBuilder(32);   // reused every frame, labels copy it
     private final float FONT_SCALE = 1;
 
     /**
@@ -96,31 +112,141 @@ public class UserInterface {
      * Updates state labels, pause/play button, slider value, speed label and renders ui
      */
     public void render () {
-        // update state labels
-        altitudeLabel.setText(String.format("Altitude: %.0f m", sim.getAltitude()));
-        distanceLabel.setText(String.format("Dist-rem: %.1f km", sim.getDownrangeDistance()/1000f));
-        pitchLabel.setText(String.format("Pitch: %.1f deg", sim.getPitch()));
-        massLabel.setText(String.format("Mass: %.1f kg", sim.getMass()));
-        verticalVelLabel.setText(String.format("V-vert: %.1f m/s", sim.getVerticalVelocity()));
-        horizontalVelLabel.setText(String.format("V-horiz: %.1f m/s", sim.getHorizontalVelocity()));
+        // update state labels, formatted without creating strings
+        setLabel(altitudeLabel, "Altitude: ", sim.getAltitude(), 0, " m");
+        setLabel(distanceLabel, "Dist-rem: ", sim.getDownrangeDistance()/1000f, 1, " km");
+        setLabel(flownLabel, "Flown: ", sim.getFlownDistance()/1000f, 1, " km");
+        HistoryChannels channels = sim.getHistoryChannels();
+        if (channelLabels.length != channels.size()) {
+            createChannelLabels(channels);
+        }
+        if (sim.areHistoriesLoaded()) {
+            // all histories sampled at once
+            sim.sampleHistories(channelValues);
+            setLabel(pitchLabel, "Pitch: ", (180f/(float) Math.PI) * channelValue(channels, Trajectory3D.CHANNEL_PITCH), 1, " deg");
+            setLabel(massLabel, "Mass: ", channelValue(channels, Trajectory3D.CHANNEL_MASS), 1, " kg");
+            setLabel(verticalVelLabel, "V-vert: ", channelValue(channels, Trajectory3D.CHANNEL_VR), 1, " m/s");
+            setLabel(horizontalVelLabel, "V-horiz: ", channelValue(channels, Trajectory3D.CHANNEL_VTH), 1, " m/s");
+            for (int channel = 0; channel < channelLabels.length; channel++) {
+                if (channelLabels[channel] != null) {
+                    setLabel(channelLabels[channel], channelPrefixes[channel], channelValues[channel], 1, "");
+                }
+            }
+        } else {    // do not wait for histories still loading
+            if (sim.isPitchLoaded()) {
+                setLabel(pitchLabel, "Pitch: ", sim.getPitch(), 1, " deg");
+            } else {
+                pitchLabel.setText("Pitch: ...");
+            }
+            massLabel.setText("Mass: ...");
+            verticalVelLabel.setText("V-vert: ...");
+            horizontalVelLabel.setText("V-horiz: ...");
+        }
+
+        TrajectoryComparison comparison = simScreen.getComparison();
+        if (comparison != null) {
+            float time = sim.getElapsedSeconds();
+            setDeviationLabel(deviationLabel, "Deviation: ", comparison.deviationAt(time));
+            setDeviationLabel(deviationWindowLabel, DEVIATION_WINDOW_PREFIX, comparison.maxDeviation(time - DEVIATION_WINDOW, time));
+        }
 
         // update pause button
         String pauseButtonText = sim.isRunning() ? "Pause" : "Play";
         pauseButton.setText(pauseButtonText);
 
-        elapsedTimeLabel.setText(LocalTime.of(0,0).plus(sim.getElapsedTime()).format(elapsedTimeFormat));
+        // H:mm:ss
+        long seconds = (long) sim.getElapsedSeconds();
+        labelText.setLength(0);
+        labelText.append(seconds / 3600 % 24).append(':')
+                .append(seconds / 60 % 60, 2, '0').append(':')
+                .append(seconds % 60, 2, '0');
+        elapsedTimeLabel.setText(labelText);
 
         // update slider
         slider.setValue(sim.getPosition());
 
         // update sim speed value
-        String speedFormat = (sim.getSpeed() < 1) ? "%.1f" : "%.0f";
-        speedValueLabel.setText(String.format(speedFormat + "x", sim.getSpeed()));
+        setLabel(speedValueLabel, "", sim.getSpeed(), (sim.getSpeed() < 1) ? 1 : 0, "x");
 
         stage.act();
         stage.draw();
     }
 
+    /**
+     * @param channels histories of trajectory
+     * @param name name of channel
+     * @return sampled value of channel, 0 if there is no such channel
+     */
+    private float channelValue(HistoryChannels channels, String name) {
+        int channel = channels.indexOf(name);
+        return (channel < 0) ? 0 : channelValues[channel];
+    }
+
+    /**
+     * Adds label of every history without its own label to state table
+     * @param channels histories of trajectory
+     */
+    private void createChannelLabels(HistoryChannels channels) {
+        for (VisLabel label : channelLabels) {
+            if (label != null) {
+                stateVariables.removeActor(label);
+            }
+        }
+        channelLabels = new VisLabel[channels.size()];
+        channelPrefixes = new String[channels.size()];
+        channelValues = new float[channels.size()];
+        for (int channel = 0; channel < channels.size(); channel++) {
+            String name = channels.getName(channel);
+            if (!name.equals(Trajectory3D.CHANNEL_PITCH) && !name.equals(Trajectory3D.CHANNEL_MASS)
+                    && !name.equals(Trajectory3D.CHANNEL_VR) && !name.equals(Trajectory3D.CHANNEL_VTH)) {
+                channelLabels[channel] = new VisLabel("");
+                channelPrefixes[channel] = name + ": ";
+                stateVariables.row();
+                stateVariables.add(channelLabels[channel]);
+            }
+        }
+    }
+
+    /**
+     * Sets label text to deviation in meters, dash if there is no deviation at the time
+     * @param label the label
+     * @param prefix text before value
+     * @param deviation the deviation, NaN if missing
+     */
+    private void setDeviationLabel(VisLabel label, String prefix, float deviation) {
+        if (Float.isNaN(deviation)) {
+            labelText.setLength(0);
+            labelText.append(prefix).append('-');
+            label.setText(labelText);
+        } else {
+            setLabel(label, prefix, deviation, 0, " m");
+        }
+    }
+
+    /**
+     * Sets label text to value with fixed amount of decimals, like String.format with %.nf
+     * @param label the label
+     * @param prefix text before value
+     * @param value the value
+     * @param decimals amount of decimal places, 0 or 1
+     * @param suffix text after value
+     */
+    private void setLabel(VisLabel label, String prefix, float value, int decimals, String suffix) {
+        long scale = (decimals == 0) ? 1 : 10;
+        long rounded = Math.round(Math.abs((double) value) * scale);
+        labelText.setLength(0);
+        labelText.append(prefix);
+        if (value < 0 && rounded != 0) {
+            labelText.append('-');
+        }
+        labelText.append(rounded / scale);
+        if (decimals > 0) {
+            labelText.append('.').append(rounded % scale);
+        }
+        labelText.append(suffix);
+        label.setText(labelText);
+    }
+
     public void resize (int width, int height) {
         stage.getViewport().update(width, height, true);
     }
@@ -139,18 +265,21 @@ public class UserInterface {
     private Table createStateVarTable() {
         altitudeLabel = new VisLabel("");
         distanceLabel = new VisLabel("");
+        flownLabel = new VisLabel("");
         pitchLabel = new VisLabel("");
         massLabel = new VisLabel("");
         verticalVelLabel = new VisLabel("");
         horizontalVelLabel = new VisLabel("");
 
-        Table stateVariables = new Table();
+        stateVariables = new Table();
 
         stateVariables.columnDefaults(0).left();
         stateVariables.add(altitudeLabel);
         stateVariables.row();
         stateVariables.add(distanceLabel);
         stateVariables.row();
+        stateVariables.add(flownLabel);
+        stateVariables.row();
         stateVariables.add(pitchLabel);
         stateVariables.row();
         stateVariables.add(massLabel);
@@ -158,6 +287,14 @@ public class UserInterface {
         stateVariables.add(verticalVelLabel);
         stateVariables.row();
         stateVariables.add(horizontalVelLabel);
+        if (simScreen.getComparison() != null) {
+            deviationLabel = new VisLabel("");
+            deviationWindowLabel = new VisLabel("");
+            stateVariables.row();
+            stateVariables.add(deviationLabel);
+            stateVariables.row();
+            stateVariables.add(deviationWindowLabel);
+        }
         return stateVariables;
     }
 
@@ -4,23 +4,29 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.g3d.*;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
 import com.badlogic.gdx.graphics.g3d.utils.CameraInputController;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.math.collision.Ray;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import cz.vutbr.fit.xkarpi06.bt.MoonLanding;
 import cz.vutbr.fit.xkarpi06.bt.input.load.ProjectFiles;
 import cz.vutbr.fit.xkarpi06.bt.model.Constants;
 import cz.vutbr.fit.xkarpi06.bt.output.MyLog;
+import cz.vutbr.fit.xkarpi06.bt.controller.ClickToSeekProcessor;
 import cz.vutbr.fit.xkarpi06.bt.controller.MyInputProcessor;
 import cz.vutbr.fit.xkarpi06.bt.model.Simulation;
 import cz.vutbr.fit.xkarpi06.bt.model.Trajectory3D;
+import cz.vutbr.fit.xkarpi06.bt.model.TrajectoryComparison;
 
 import java.util.logging.Logger;
 
@@ -49,6 +55,11 @@ public class VisualizationScreen implements Screen {
     private UserInterface userInterface;
     private CameraInputController camController;
     private MyInputProcessor myInputProcessor;
+    private ClickToSeekProcessor clickToSeekProcessor;
+
+    /** Largest distance of clicked trajectory from cursor in pixels */
+    private static final float PICK_TOLERANCE_PIXELS = 5f;
+    private final Matrix4 pickTransform = new Matrix4();
 
     /** rendering variables */
     private ModelBatch modelBatch;
@@ -57,17 +68,31 @@ public class VisualizationScreen implements Screen {
     /** Model Instances hold information about model representation on screen */
     private ModelInstance shipInstance;
     private ModelInstance moonInstance;
-    private ModelInstance trajectoryInstance;
+    private TrajectoryRenderer trajectoryRenderer;
+
+    /** Renderer of nominal trajectory, null if not comparing */
+    private TrajectoryRenderer nominalRenderer;
+
+    /** Colours of flown trajectory from zero deviation to the biggest one, grey without nominal trajectory */
+    private static final Color DEVIATION_COLOR_MIN = Color.GREEN;
+    private static final Color DEVIATION_COLOR_MAX = Color.RED;
+    private static final Color DEVIATION_COLOR_MISSING = Color.GRAY;
 
     /** Variables for loading 3D models */
     private AssetManager assets;
     private Trajectory3D trajectory;
     private Simulation sim;
+    private TrajectoryComparison comparison;
 
     /** Render framerate variables */
     private float fps = 30;
     private float dt = 1/fps;
     private float accumulator = 0;
+    private boolean firstFrameRendered = false;
+
+    /** Pitch applied to ship model in radians, 0 while pitch history is loading */
+    private float shipPitch = 0;
+    private boolean shipPitchLoaded = false;
 
     /**
      * Constructor
@@ -77,6 +102,7 @@ public class VisualizationScreen implements Screen {
         this.game = game;
         this.assets = game.assets;
         this.trajectory = game.trajectory;
+        this.comparison = game.comparison;
         this.sim = game.sim;
         this.sim.setScreen(this);
 
@@ -86,6 +112,7 @@ public class VisualizationScreen implements Screen {
         createModelInstances();
         initializeScene();
         sim.run();
+        if (game.follower != null) { game.follower.start(sim); }
     }
 
     /**
@@ -98,6 +125,14 @@ public class VisualizationScreen implements Screen {
         processUserKeyboardInput();
         camController.update(); // update camera
         userInterface.render(); // render last, or it will be behind moon
+        if (!firstFrameRendered) {
+            firstFrameRendered = true;
+            trajectory.loadHistoriesInBackground();  // histories are loaded after the first frame, ship keeps default attitude meanwhile
+        }
+        if (!shipPitchLoaded && sim.isPitchLoaded()) {
+            shipPitchLoaded = true;
+            updateShipPitch(sim.getShipPitch());
+        }
 
         accumulator += delta;
         if(accumulator >= dt) {
@@ -172,15 +207,17 @@ public class VisualizationScreen implements Screen {
     }
 
     /**
-     * Init controllers of this screen: userInterface, camController, myInputProcessor
+     * Init controllers of this screen: userInterface, camController, myInputProcessor, clickToSeekProcessor
      */
     private void initializeControllers() {
         userInterface = new UserInterface(sim, this);
         camController = new CameraInputController(cam);
         camController.scrollFactor *= SCENE_SCALE;
         myInputProcessor = new MyInputProcessor(sim);
+        clickToSeekProcessor = new ClickToSeekProcessor(this);
         InputMultiplexer inputMultiplexer = new InputMultiplexer();
         inputMultiplexer.addProcessor(userInterface.getStage());
+        inputMultiplexer.addProcessor(clickToSeekProcessor);  // before camera controller, which consumes touches
         inputMultiplexer.addProcessor(camController);
         inputMultiplexer.addProcessor(myInputProcessor);
         Gdx.input.setInputProcessor(inputMultiplexer);
@@ -212,17 +249,48 @@ public class VisualizationScreen implements Screen {
     }
 
     private void createTrajectoryInstance() {
-        trajectory.buildModel();
-        trajectoryInstance = new ModelInstance(trajectory.getModel());
+        trajectory.setVertexColors((comparison != null) ? createDeviationColors() : null);
+        trajectoryRenderer = new TrajectoryRenderer(trajectory, SCENE_SCALE);
+        if (comparison != null) {
+            nominalRenderer = new TrajectoryRenderer(comparison.getNominal(), SCENE_SCALE);
+        }
         Gdx.gl.glLineWidth(2);
     }
 
+    /**
+     * Colours smooth vertices of trajectory by their deviation from nominal trajectory
+     * @return packed colour of each smooth vertex
+     */
+    private float[] createDeviationColors() {
+        float[] deviations = comparison.getVertexDeviations();
+        float maxDeviation = comparison.maxDeviation(comparison.getStartTime(), comparison.getEndTime());
+        float[] colors = new float[deviations.length];
+        Color color = new Color();
+        for (int i = 0; i < deviations.length; i++) {
+            if (Float.isNaN(deviations[i])) {
+                colors[i] = DEVIATION_COLOR_MISSING.toFloatBits();
+            } else {
+                float fraction = (maxDeviation > 0) ? deviations[i] / maxDeviation : 0;
+                colors[i] = color.set(DEVIATION_COLOR_MIN).lerp(DEVIATION_COLOR_MAX, fraction).toFloatBits();
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Builds trajectory model again after trajectory was extended, if appending could not update it in place,
+     * placement is kept by renderer
+     */
+    public void rebuildTrajectory() {
+        trajectory.buildModel();
+    }
+
     /**
      * Places spaceship at start of trajectory. (Moves Moon and Trajectory)
      */
     private void initializeScene() {
-        updateScene(new Vector3(0, 0, 0), trajectory.vertexAt(sim.getPosition()));
-        updateShipPitch(0, trajectory.pitchAt(sim.getPosition()));
+        updateScene(new Vector3(0, 0, 0), trajectory.vertexAt(sim.getPosition()), 0, trajectory.centralAngleAt(sim.getPosition()));
+        updateShipPitch(sim.getShipPitch());
     }
 
     private void clearScreen() {
@@ -248,7 +316,14 @@ public class VisualizationScreen implements Screen {
         modelBatch.begin(cam);
         modelBatch.render(moonInstance, environment);
         modelBatch.render(shipInstance, environment);
-        modelBatch.render(trajectoryInstance, environment);
+        trajectoryRenderer.update(cam, sim.getPosition(), Gdx.graphics.getHeight());
+        modelBatch.render(trajectoryRenderer, environment);
+        if (nominalRenderer != null) {
+            // near field of nominal trajectory is around its position at the same mission time
+            Trajectory3D nominal = comparison.getNominal();
+            nominalRenderer.update(cam, nominal.positionAtTime(sim.getElapsedSeconds()), Gdx.graphics.getHeight());
+            modelBatch.render(nominalRenderer, environment);
+        }
         modelBatch.end();
     }
 
@@ -256,37 +331,66 @@ public class VisualizationScreen implements Screen {
      * Updates spaceship position in scene. (Moves Moon and Trajectory in opposite direction)
      * @param prevShipPosition ship old position
      * @param newShipPosition ship new position
+     * @param prevCentralAngle central angle theta of ship old position
+     * @param newCentralAngle central angle theta of ship new position
      */
-    public void updateScene(Vector3 prevShipPosition, Vector3 newShipPosition) {
-        Vector3 delta = new Vector3(newShipPosition).sub(prevShipPosition); // copy vector, or it would change it
+    public void updateScene(Vector3 prevShipPosition, Vector3 newShipPosition, float prevCentralAngle, float newCentralAngle) {
+        float deltaX = newShipPosition.x - prevShipPosition.x;
+        float deltaY = newShipPosition.y - prevShipPosition.y;
+        float deltaZ = newShipPosition.z - prevShipPosition.z;
 
         // move moon and trajectory opposite way than ship is supposed to move
-        trajectoryInstance.transform.translate(-delta.x, -delta.y, -delta.z);
-        moonInstance.transform.translate(-delta.x, -delta.y, -delta.z);
+        trajectoryRenderer.transform.translate(-deltaX, -deltaY, -deltaZ);
+        if (nominalRenderer != null) {
+            nominalRenderer.transform.translate(-deltaX, -deltaY, -deltaZ);
+        }
+        moonInstance.transform.translate(-deltaX, -deltaY, -deltaZ);
 
-        accountForMoonCurvature(prevShipPosition, newShipPosition);
+        accountForMoonCurvature(prevCentralAngle, newCentralAngle);
     }
 
     /**
      * Rotates ship so that bottom is directed to Moon's surface if no other rotations are applied
      * Only does so for x-y plane
-     * @param prev ship old position
-     * @param newp ship new position
+     * @param thetaOld central angle theta of ship old position
+     * @param thetaNew central angle theta of ship new position
      */
-    private void accountForMoonCurvature(Vector3 prev, Vector3 newp) {
+    private void accountForMoonCurvature(float thetaOld, float thetaNew) {
         // rotate ship bottom to surface based on central angle theta
-        float thetaOld = (float) Math.atan2(prev.y, prev.x);
-        float thetaNew = (float) Math.atan2(newp.y, newp.x);
         shipInstance.transform.rotateRad(Vector3.Z, thetaNew - thetaOld);
     }
 
     /**
      * Updates spaceship pitch. It will "add up" to current ship rotation accounting for Moon curvature
-     * @param prevShipPitch ship old pitch
      * @param newShipPitch ship new pitch
      */
-    public void updateShipPitch(float prevShipPitch, float newShipPitch) {
-        shipInstance.transform.rotateRad(Vector3.Z, newShipPitch - prevShipPitch);
+    public void updateShipPitch(float newShipPitch) {
+        shipInstance.transform.rotateRad(Vector3.Z, newShipPitch - shipPitch);
+        shipPitch = newShipPitch;
+    }
+
+    /**
+     * Moves ship to point of trajectory under cursor, nothing happens if trajectory is not there
+     * @param screenX x coordinate of cursor
+     * @param screenY y coordinate of cursor
+     */
+    public void seekToTrajectoryAt(int screenX, int screenY) {
+        Ray ray = cam.getPickRay(screenX, screenY);
+        // trajectory is moved in scene, so that ship stays at origin
+        ray.mul(pickTransform.set(trajectoryRenderer.transform).inv());
+        // size of one pixel at unit distance from camera
+        float pixelSize = 2 * (float) Math.tan(cam.fieldOfView * MathUtils.degreesToRadians / 2) / Math.max(Gdx.graphics.getHeight(), 1);
+        float position = trajectory.pickPosition(ray, PICK_TOLERANCE_PIXELS * pixelSize);
+        if (position >= 0) {
+            sim.setShipPosition(position);
+        }
+    }
+
+    /**
+     * @return comparison of trajectory with nominal one, null if not comparing
+     */
+    public TrajectoryComparison getComparison() {
+        return comparison;
     }
 
     /**
@@ -295,6 +399,10 @@ public class VisualizationScreen implements Screen {
     public void backToMainMenu() {
         sim.stop();
         sim.setScreen(null);
+        if (game.follower != null) {
+            game.follower.stop();
+            game.follower = null;
+        }
 //        game.font.getData().setScale(1);
         game.setScreen(new MainMenuScreen(game));
         dispose();